@@ -0,0 +1,105 @@
+package com.sambrana.oauth2login.bench;
+
+import com.sambrana.oauth2login.Oath2LoginDemoApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Boots the real application against an embedded database and the in-process
+ * provider stub. Client registrations are defined here, which also keeps Boot
+ * from doing OIDC discovery against accounts.google.com.
+ *
+ * The database defaults to H2 in MySQL mode; pass {@code -Dbench.jdbc.url=...}
+ * (plus {@code bench.jdbc.username/password}) to measure against a real MySQL.
+ */
+final class BenchmarkApp implements AutoCloseable {
+
+    private final StubUserInfoServer stub;
+    private final ConfigurableApplicationContext context;
+
+    BenchmarkApp() throws IOException {
+        this(Map.of());
+    }
+
+    BenchmarkApp(Map<String, Object> extraProperties) throws IOException {
+        stub = new StubUserInfoServer();
+        StubRegistrations.baseUrl = stub.baseUrl();
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", "0");
+        String jdbcUrl = System.getProperty("bench.jdbc.url",
+                "jdbc:h2:mem:bench;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.url", jdbcUrl);
+        properties.put("spring.datasource.username", System.getProperty("bench.jdbc.username", "sa"));
+        properties.put("spring.datasource.password", System.getProperty("bench.jdbc.password", ""));
+        // Let Boot infer the driver from the URL
+        properties.put("spring.datasource.driver-class-name", "");
+        properties.put("spring.jpa.properties.hibernate.dialect", jdbcUrl.startsWith("jdbc:h2:")
+                ? "org.hibernate.dialect.H2Dialect" : "org.hibernate.dialect.MySQLDialect");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create");
+        properties.put("app.github.api-base-url", stub.baseUrl());
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.org.springframework.security", "WARN");
+        properties.put("logging.level.org.hibernate.type.descriptor.sql", "WARN");
+        properties.putAll(extraProperties);
+
+        context = new SpringApplicationBuilder(Oath2LoginDemoApplication.class, StubRegistrations.class)
+                .properties(properties)
+                .run();
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    ClientRegistration registration(String registrationId) {
+        return bean(ClientRegistrationRepository.class).findByRegistrationId(registrationId);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        stub.close();
+    }
+
+    @Configuration
+    static class StubRegistrations {
+
+        static volatile String baseUrl;
+
+        @Bean
+        ClientRegistrationRepository clientRegistrationRepository() {
+            ClientRegistration github = ClientRegistration.withRegistrationId("github")
+                    .clientId("bench").clientSecret("bench")
+                    .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                    .redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+                    .scope("read:user", "user:email")
+                    .authorizationUri(baseUrl + "/login/oauth/authorize")
+                    .tokenUri(baseUrl + "/login/oauth/access_token")
+                    .userInfoUri(baseUrl + "/user")
+                    .userNameAttributeName("id")
+                    .build();
+            ClientRegistration google = ClientRegistration.withRegistrationId("google")
+                    .clientId("bench").clientSecret("bench")
+                    .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                    .redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+                    .scope("openid", "profile", "email")
+                    .authorizationUri(baseUrl + "/o/oauth2/v2/auth")
+                    .tokenUri(baseUrl + "/token")
+                    .jwkSetUri(baseUrl + "/oauth2/v3/certs")
+                    .userNameAttributeName("sub")
+                    .build();
+            return new InMemoryClientRegistrationRepository(github, google);
+        }
+    }
+}
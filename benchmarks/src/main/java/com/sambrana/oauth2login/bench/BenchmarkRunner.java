@@ -0,0 +1,42 @@
+package com.sambrana.oauth2login.bench;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entry point of benchmarks.jar. Defaults report, per benchmark:
+ * throughput (ops/s), latency percentiles (sample mode: p50/p90/p99/p99.9) and,
+ * through the GC profiler, allocation per operation ({@code gc.alloc.rate.norm}).
+ * Any regular JMH command-line option overrides these, e.g.
+ * {@code java -jar target/benchmarks.jar ProfileBenchmark -t 8}.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options defaults = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .mode(Mode.Throughput)
+                .mode(Mode.SampleTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(5))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(10))
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(defaults).run();
+    }
+}
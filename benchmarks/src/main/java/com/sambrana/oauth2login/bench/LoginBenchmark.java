@@ -0,0 +1,114 @@
+package com.sambrana.oauth2login.bench;
+
+import com.sambrana.oauth2login.config.OAuth2LoginSuccessHandler;
+import com.sambrana.oauth2login.service.CustomOAuth2UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.userinfo.OAuth2UserRequest;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
+import org.springframework.security.oauth2.core.oidc.user.OidcUserAuthority;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The two login hooks: {@code CustomOAuth2UserService.loadUser} (GitHub, with
+ * the user-info call served by the local stub) and
+ * {@code OAuth2LoginSuccessHandler.onAuthenticationSuccess} (Google OIDC principal).
+ *
+ * "returning" reuses one identity, so after the first call it measures the
+ * lookup-and-skip path; "new" mints a fresh identity per call.
+ */
+@State(Scope.Benchmark)
+public class LoginBenchmark {
+
+    private static final long RETURNING_ID = 1;
+
+    private BenchmarkApp app;
+    private CustomOAuth2UserService userService;
+    private OAuth2LoginSuccessHandler successHandler;
+    private ClientRegistration github;
+    private final AtomicLong nextId = new AtomicLong(1_000_000);
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        app = new BenchmarkApp();
+        userService = app.bean(CustomOAuth2UserService.class);
+        successHandler = app.bean(OAuth2LoginSuccessHandler.class);
+        github = app.registration("github");
+        userService.loadUser(githubRequest("tok-" + RETURNING_ID));
+        successHandler.onAuthenticationSuccess(new MockHttpServletRequest(), new MockHttpServletResponse(),
+                googleAuthentication("google-" + RETURNING_ID));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        app.close();
+    }
+
+    @Benchmark
+    public OAuth2User loadUserReturning() {
+        return userService.loadUser(githubRequest("tok-" + RETURNING_ID));
+    }
+
+    @Benchmark
+    public OAuth2User loadUserNew() {
+        return userService.loadUser(githubRequest("tok-" + nextId.incrementAndGet()));
+    }
+
+    @Benchmark
+    public OAuth2User loadUserEmailFallback() {
+        return userService.loadUser(githubRequest("noemail-" + RETURNING_ID));
+    }
+
+    @Benchmark
+    public MockHttpServletResponse successHandlerReturning() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        successHandler.onAuthenticationSuccess(new MockHttpServletRequest(), response,
+                googleAuthentication("google-" + RETURNING_ID));
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse successHandlerNew() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        successHandler.onAuthenticationSuccess(new MockHttpServletRequest(), response,
+                googleAuthentication("google-" + nextId.incrementAndGet()));
+        return response;
+    }
+
+    private OAuth2UserRequest githubRequest(String token) {
+        Instant now = Instant.now();
+        return new OAuth2UserRequest(github,
+                new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, token, now, now.plusSeconds(3600)));
+    }
+
+    private static OAuth2AuthenticationToken googleAuthentication(String subject) {
+        Instant now = Instant.now();
+        OidcIdToken idToken = OidcIdToken.withTokenValue("id-token")
+                .issuer("https://accounts.google.com")
+                .subject(subject)
+                .audience(List.of("bench"))
+                .issuedAt(now)
+                .expiresAt(now.plusSeconds(3600))
+                .claim("email", subject + "@bench.local")
+                .claim("name", "Bench " + subject)
+                .claim("picture", "https://lh3.bench.local/" + subject)
+                .build();
+        List<GrantedAuthority> authorities = List.of(new OidcUserAuthority(idToken));
+        return new OAuth2AuthenticationToken(new DefaultOidcUser(authorities, idToken), authorities, "google");
+    }
+}
@@ -0,0 +1,106 @@
+package com.sambrana.oauth2login.bench;
+
+import com.sambrana.oauth2login.controller.ProfileUpdateRequest;
+import com.sambrana.oauth2login.controller.UserController;
+import com.sambrana.oauth2login.model.ProfileView;
+import com.sambrana.oauth2login.repository.ProvisioningRepository;
+import com.sambrana.oauth2login.repository.ProvisioningRepository.LinkedUser;
+import com.sambrana.oauth2login.repository.UserRepository;
+import com.sambrana.oauth2login.service.AppUserPrincipal;
+import com.sambrana.oauth2login.service.ProfileCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+
+/**
+ * {@code GET /api/me} and {@code POST /api/profile} at the controller level, with
+ * the session's compact principal. "cold" evicts the profile cache first so the
+ * database read is included. "revalidate" sends the ETag of the previous
+ * response, as a browser does, and should come back 304.
+ *
+ * "loadProfile" compares the two ways of reading the profile row: a managed
+ * {@code User} entity copied into a {@link ProfileView} (the former /api/me miss
+ * path) and the constructor-expression projection it uses now. Compare their
+ * {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+public class ProfileBenchmark {
+
+    private BenchmarkApp app;
+    private UserController controller;
+    private ProfileCache profileCache;
+    private UserRepository userRepository;
+    private AppUserPrincipal principal;
+    private OAuth2AuthenticationToken authentication;
+    private ProfileUpdateRequest update;
+    private final HttpHeaders noConditions = new HttpHeaders();
+    private final HttpHeaders ifNoneMatch = new HttpHeaders();
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        app = new BenchmarkApp();
+        controller = app.bean(UserController.class);
+        profileCache = app.bean(ProfileCache.class);
+        userRepository = app.bean(UserRepository.class);
+
+        LinkedUser user = app.bean(ProvisioningRepository.class)
+                .upsertUserAndLink("GITHUB", "42", "profile@bench.local", "Profile Bench", null).user();
+        principal = new AppUserPrincipal(user.userId(), user.email(), "GITHUB");
+        authentication = new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "github");
+
+        update = new ProfileUpdateRequest();
+        update.setDisplayName("Profile Bench");
+        update.setBio("Benchmarking the profile write path");
+
+        ifNoneMatch.setIfNoneMatch(controller.getAuthenticatedUser(authentication, principal, noConditions)
+                .getHeaders().getETag());
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        app.close();
+    }
+
+    @Benchmark
+    public ResponseEntity<?> getAuthenticatedUserCached() {
+        return controller.getAuthenticatedUser(authentication, principal, noConditions);
+    }
+
+    @Benchmark
+    public ResponseEntity<?> getAuthenticatedUserCold() {
+        profileCache.evict(principal.getEmail());
+        return controller.getAuthenticatedUser(authentication, principal, noConditions);
+    }
+
+    @Benchmark
+    public ResponseEntity<?> getAuthenticatedUserRevalidateCached() {
+        return controller.getAuthenticatedUser(authentication, principal, ifNoneMatch);
+    }
+
+    @Benchmark
+    public ResponseEntity<?> getAuthenticatedUserRevalidateCold() {
+        profileCache.evict(principal.getEmail());
+        return controller.getAuthenticatedUser(authentication, principal, ifNoneMatch);
+    }
+
+    @Benchmark
+    public Object loadProfileEntity() {
+        return userRepository.findByEmail(principal.getEmail()).map(ProfileView::of);
+    }
+
+    @Benchmark
+    public Object loadProfileProjection() {
+        return userRepository.findProfileViewByEmail(principal.getEmail());
+    }
+
+    @Benchmark
+    public ResponseEntity<?> updateProfile() {
+        return controller.updateProfile(update, principal);
+    }
+}
@@ -0,0 +1,81 @@
+package com.sambrana.oauth2login.bench;
+
+import com.sambrana.oauth2login.config.RateLimitFilter;
+import com.sambrana.oauth2login.config.RequestRateLimits;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Per-request cost of {@link RateLimitFilter}, without the rest of the filter chain.
+ * "unlimited" is a path outside every group (the matcher scan only); "hotClient"
+ * has all threads hitting one bucket (CAS contention); "manyClients" spreads
+ * requests over 50,000 client addresses (map lookups and bucket creation). The
+ * limits are high enough that requests are allowed, so the numbers are the
+ * overhead every admitted request pays.
+ */
+@State(Scope.Benchmark)
+public class RateLimitBenchmark {
+
+    private static final int CLIENTS = 50_000;
+
+    private RateLimitFilter filter;
+    private final FilterChain chain = (request, response) -> { };
+
+    @State(Scope.Thread)
+    public static class Requests {
+
+        MockHttpServletRequest unlimited;
+        MockHttpServletRequest login;
+        MockHttpServletResponse response;
+        String[] addresses;
+
+        @Setup(Level.Trial)
+        public void create() {
+            unlimited = new MockHttpServletRequest("GET", "/api/me");
+            login = new MockHttpServletRequest("GET", "/oauth2/authorization/github");
+            response = new MockHttpServletResponse();
+            addresses = new String[CLIENTS];
+            for (int i = 0; i < CLIENTS; i++) {
+                addresses[i] = "10." + (i >> 16) + "." + ((i >> 8) & 0xff) + "." + (i & 0xff);
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void start() {
+        RequestRateLimits limits = new RequestRateLimits(new SimpleMeterRegistry(), Duration.ofMinutes(10),
+                CLIENTS * 2L, 1_000_000_000, Duration.ofSeconds(1), 1_000_000,
+                1_000_000_000, Duration.ofSeconds(1), 1_000_000);
+        filter = new RateLimitFilter(limits);
+    }
+
+    @Benchmark
+    public Object unlimited(Requests requests) throws Exception {
+        filter.doFilter(requests.unlimited, requests.response, chain);
+        return requests.response;
+    }
+
+    @Benchmark
+    public Object hotClient(Requests requests) throws Exception {
+        requests.login.setRemoteAddr("10.0.0.1");
+        filter.doFilter(requests.login, requests.response, chain);
+        return requests.response;
+    }
+
+    @Benchmark
+    public Object manyClients(Requests requests) throws Exception {
+        requests.login.setRemoteAddr(requests.addresses[ThreadLocalRandom.current().nextInt(CLIENTS)]);
+        filter.doFilter(requests.login, requests.response, chain);
+        return requests.response;
+    }
+}
@@ -0,0 +1,72 @@
+package com.sambrana.oauth2login.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process stand-in for GitHub's {@code /user} and {@code /user/emails}.
+ *
+ * The bearer token decides who you are: {@code tok-<n>} is GitHub user {@code n}
+ * with email {@code u<n>@bench.local}. Tokens starting with {@code noemail-}
+ * return no public email, which forces the {@code /user/emails} fallback.
+ */
+final class StubUserInfoServer implements AutoCloseable {
+
+    private final HttpServer server;
+
+    StubUserInfoServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/user/emails", this::emails);
+        server.createContext("/user", this::user);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void user(HttpExchange exchange) throws IOException {
+        String token = bearer(exchange);
+        boolean hideEmail = token.startsWith("noemail-");
+        String id = token.substring(token.indexOf('-') + 1);
+        String body = "{\"id\":" + id
+                + ",\"login\":\"u" + id + "\""
+                + ",\"name\":\"Bench User " + id + "\""
+                + ",\"avatar_url\":\"https://avatars.bench.local/u/" + id + "\""
+                + ",\"email\":" + (hideEmail ? "null" : "\"u" + id + "@bench.local\"")
+                + "}";
+        respond(exchange, body);
+    }
+
+    private void emails(HttpExchange exchange) throws IOException {
+        String token = bearer(exchange);
+        String id = token.substring(token.indexOf('-') + 1);
+        respond(exchange, "[{\"email\":\"u" + id + "@bench.local\",\"primary\":true,\"verified\":true}]");
+    }
+
+    private static String bearer(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        return header == null ? "tok-0" : header.substring("Bearer ".length());
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,10 @@
+// Production build for serving from the Spring Boot app itself (app.frontend.mode=bundled):
+// REACT_APP_API_URL is forced empty so API calls and login links are same-origin relative URLs,
+// whatever a local .env says, then the output is precompressed.
+const { execSync } = require('child_process');
+
+execSync('react-scripts build', {
+    stdio: 'inherit',
+    env: { ...process.env, REACT_APP_API_URL: '' }
+});
+require('./compress');
@@ -0,0 +1,43 @@
+// Writes .br and .gz siblings next to the compressible files of the production build, so the
+// server can send them as-is (Content-Encoding) instead of compressing on every request.
+// Run by "npm run build:bundled" (scripts/build-bundled.js) after the production build.
+const fs = require('fs');
+const path = require('path');
+const zlib = require('zlib');
+
+const BUILD_DIR = path.join(__dirname, '..', 'build');
+const COMPRESSIBLE = new Set(['.html', '.js', '.css', '.json', '.svg', '.txt', '.map', '.ico']);
+// Below this, the saving doesn't pay for the extra file and lookup
+const MIN_SIZE = 1024;
+
+function walk(dir) {
+    return fs.readdirSync(dir, { withFileTypes: true }).flatMap(entry => {
+        const full = path.join(dir, entry.name);
+        return entry.isDirectory() ? walk(full) : [full];
+    });
+}
+
+let written = 0;
+for (const file of walk(BUILD_DIR)) {
+    if (!COMPRESSIBLE.has(path.extname(file))) continue;
+    const content = fs.readFileSync(file);
+    if (content.length < MIN_SIZE) continue;
+
+    const variants = {
+        '.br': zlib.brotliCompressSync(content, {
+            params: {
+                [zlib.constants.BROTLI_PARAM_QUALITY]: zlib.constants.BROTLI_MAX_QUALITY,
+                [zlib.constants.BROTLI_PARAM_SIZE_HINT]: content.length
+            }
+        }),
+        '.gz': zlib.gzipSync(content, { level: zlib.constants.Z_BEST_COMPRESSION })
+    };
+    for (const [extension, compressed] of Object.entries(variants)) {
+        // Only keep a variant that is actually smaller
+        if (compressed.length < content.length) {
+            fs.writeFileSync(file + extension, compressed);
+            written++;
+        }
+    }
+}
+console.log(`Precompressed ${written} files in ${BUILD_DIR}`);
@@ -1,7 +1,8 @@
 import React, { useEffect, useState } from 'react';
 import axios from 'axios';
 
-const API_URL = process.env.REACT_APP_API_URL || 'http://localhost:8080';
+// Empty (a bundled build served by the backend itself) means same-origin, relative URLs
+const API_URL = process.env.REACT_APP_API_URL ?? 'http://localhost:8080';
 
 // This tells axios to send cookies (like the login session) with every request
 axios.defaults.withCredentials = true;
@@ -20,6 +21,8 @@ function getCookie(name) {
 
 export default function Profile() {
     const [user, setUser] = useState(null);
+    // The profile as last read from / written to the server, to send only what changed
+    const [saved, setSaved] = useState(null);
     const [loading, setLoading] = useState(true);
     const [saving, setSaving] = useState(false);
     
@@ -32,9 +35,11 @@ export default function Profile() {
                 // We still need to hit /api/csrf to *get* the cookie
                 await axios.get(`${API_URL}/api/csrf`);
 
-                // Then fetch user data
+                // Then fetch user data. The server marks /api/me "private, no-cache" with an ETag,
+                // so the browser revalidates its copy (If-None-Match) and a repeat load is a 304.
                 const response = await axios.get(`${API_URL}/api/me`);
                 setUser(response.data);
+                setSaved(response.data);
             } catch (error) {
                 console.error("Could not fetch data", error);
                 setUser({ authenticated: false });
@@ -63,10 +68,11 @@ export default function Profile() {
 
         setSaving(true);
         try {
-            const payload = {
-                displayName: user.displayName,
-                bio: user.bio
-            };
+            // Only the edited fields, plus the version they were based on: if the profile was
+            // changed elsewhere in the meantime (another tab, a login refresh), the server answers 409
+            const payload = { version: saved.version };
+            if (user.displayName !== saved.displayName) payload.displayName = user.displayName;
+            if (user.bio !== saved.bio) payload.bio = user.bio;
 
             // --- Manually set the header! ---
             const config = {
@@ -76,16 +82,23 @@ export default function Profile() {
             };
 
             // Send the request with the payload AND the config
-            const response = await axios.post(`${API_URL}/api/profile`, payload, config);
+            const response = await axios.patch(`${API_URL}/api/profile`, payload, config);
 
             if (response.status === 200) {
+                const updated = { ...user, version: response.data.version };
+                setUser(updated);
+                setSaved(updated);
                 alert('Profile updated successfully!');
             } else {
                 alert(`Update failed with status: ${response.status}`);
             }
         } catch (error) {
             console.error("Update failed:", error);
-            if (error.response && error.response.status === 403) {
+            if (error.response && error.response.status === 409) {
+                setUser(error.response.data.current);
+                setSaved(error.response.data.current);
+                alert('Your profile was changed elsewhere. The current version is shown; re-apply your edits and save again.');
+            } else if (error.response && error.response.status === 403) {
                 alert('Update failed: CSRF token validation failed. Please refresh the page and try again.');
             } else {
                 alert('Failed to update profile. Check console for details.');
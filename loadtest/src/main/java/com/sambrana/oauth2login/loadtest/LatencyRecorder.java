@@ -0,0 +1,64 @@
+package com.sambrana.oauth2login.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Per-worker latency log. Each driver worker owns one, so recording is a plain
+ * array append; recorders are merged once at the end of the run.
+ */
+final class LatencyRecorder {
+
+    private long[] nanos = new long[4096];
+    private int count;
+    private long errors;
+
+    void record(long elapsedNanos) {
+        if (count == nanos.length) {
+            nanos = Arrays.copyOf(nanos, count * 2);
+        }
+        nanos[count++] = elapsedNanos;
+    }
+
+    void recordError() {
+        errors++;
+    }
+
+    static Summary summarize(Iterable<LatencyRecorder> recorders, long wallNanos) {
+        int total = 0;
+        long errors = 0;
+        for (LatencyRecorder recorder : recorders) {
+            total += recorder.count;
+            errors += recorder.errors;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (LatencyRecorder recorder : recorders) {
+            System.arraycopy(recorder.nanos, 0, all, offset, recorder.count);
+            offset += recorder.count;
+        }
+        Arrays.sort(all);
+        return new Summary(total, errors, wallNanos,
+                percentile(all, 0.50), percentile(all, 0.99), total == 0 ? 0 : all[total - 1]);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    record Summary(int logins, long errors, long wallNanos, long p50Nanos, long p99Nanos, long maxNanos) {
+
+        double loginsPerSecond() {
+            return wallNanos == 0 ? 0 : logins / (wallNanos / 1e9);
+        }
+
+        String format(String label) {
+            return String.format("%-18s logins=%d errors=%d rate=%.1f/s p50=%.1fms p99=%.1fms max=%.1fms",
+                    label, logins, errors, loginsPerSecond(),
+                    p50Nanos / 1e6, p99Nanos / 1e6, maxNanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.sambrana.oauth2login.loadtest;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Command-line entry point.
+ *
+ * <pre>
+ * java -jar loadtest.jar stub  [--port 9999] [--latency-ms 0] [--jitter-ms 0] [--error-rate 0.0]
+ * java -jar loadtest.jar drive [--app http://127.0.0.1:8080] [--provider github|google]
+ *                              [--scenario new|returning|email-fallback|all] [--concurrency 32]
+ *                              [--duration 30s] [--users 500]
+ * </pre>
+ */
+public final class LoadTestMain {
+
+    private LoadTestMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || !(args[0].equals("stub") || args[0].equals("drive"))) {
+            System.err.println("usage: loadtest.jar stub|drive [--option value ...]");
+            System.exit(2);
+        }
+        Map<String, String> options = parseOptions(args);
+        if (args[0].equals("stub")) {
+            runStub(options);
+        } else {
+            runDriver(options);
+        }
+    }
+
+    private static void runStub(Map<String, String> options) throws Exception {
+        StubProviderServer.Settings settings = new StubProviderServer.Settings(
+                Integer.parseInt(options.getOrDefault("port", "9999")),
+                Long.parseLong(options.getOrDefault("latency-ms", "0")),
+                Long.parseLong(options.getOrDefault("jitter-ms", "0")),
+                Double.parseDouble(options.getOrDefault("error-rate", "0"))
+        );
+        StubProviderServer stub = new StubProviderServer(settings);
+        stub.start();
+        System.out.println("Stub providers listening on " + stub.baseUrl() + " " + settings);
+        Runtime.getRuntime().addShutdownHook(new Thread(stub::close));
+        new CountDownLatch(1).await();
+    }
+
+    private static void runDriver(Map<String, String> options) throws InterruptedException {
+        String scenario = options.getOrDefault("scenario", "all");
+        String[] scenarios = scenario.equals("all")
+                ? new String[]{"new", "returning", "email-fallback"}
+                : new String[]{scenario};
+
+        for (String name : scenarios) {
+            // Email fallback only exists on the GitHub path
+            String provider = name.equals("email-fallback") ? "github" : options.getOrDefault("provider", "github");
+            LoginDriver.Settings settings = new LoginDriver.Settings(
+                    options.getOrDefault("app", "http://127.0.0.1:8080"),
+                    provider,
+                    name,
+                    Integer.parseInt(options.getOrDefault("concurrency", "32")),
+                    parseDuration(options.getOrDefault("duration", "30s")),
+                    Integer.parseInt(options.getOrDefault("users", "500"))
+            );
+            LatencyRecorder.Summary summary = new LoginDriver(settings).run();
+            System.out.println(summary.format(provider + "/" + name));
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected --option, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    private static Duration parseDuration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(value));
+    }
+}
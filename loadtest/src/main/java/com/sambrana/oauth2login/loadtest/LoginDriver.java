@@ -0,0 +1,169 @@
+package com.sambrana.oauth2login.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs complete authorization-code logins against the app at a fixed
+ * concurrency: app authorize redirect, stub authorize, app callback (which makes
+ * the app call the stub's token, user-info and email endpoints), and finally
+ * {@code GET /api/me} to prove the session works.
+ *
+ * Scenarios:
+ * <ul>
+ *   <li>{@code new} - every login is a user the app has never seen</li>
+ *   <li>{@code returning} - logins cycle through a warmed-up pool of users</li>
+ *   <li>{@code email-fallback} - new GitHub users without a public email, so the
+ *       app must call {@code /user/emails}</li>
+ * </ul>
+ */
+final class LoginDriver {
+
+    record Settings(String appUrl, String provider, String scenario, int concurrency,
+                    Duration duration, int userPool) {
+    }
+
+    private final Settings settings;
+    private final HttpClient http;
+    // Seeded from the clock so repeated "new" runs against one database never collide
+    private final AtomicLong nextNewUser = new AtomicLong(System.currentTimeMillis() * 1000);
+
+    LoginDriver(Settings settings) {
+        this.settings = settings;
+        this.http = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    LatencyRecorder.Summary run() throws InterruptedException {
+        if ("returning".equals(settings.scenario())) {
+            warmUpReturningUsers();
+        }
+
+        List<LatencyRecorder> recorders = new ArrayList<>();
+        long start = System.nanoTime();
+        long end = start + settings.duration().toNanos();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < settings.concurrency(); i++) {
+                LatencyRecorder recorder = new LatencyRecorder();
+                recorders.add(recorder);
+                workers.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        long t0 = System.nanoTime();
+                        if (login(nextUserKey())) {
+                            recorder.record(System.nanoTime() - t0);
+                        } else {
+                            recorder.recordError();
+                        }
+                    }
+                    return null;
+                });
+            }
+        }
+        return LatencyRecorder.summarize(recorders, System.nanoTime() - start);
+    }
+
+    private void warmUpReturningUsers() throws InterruptedException {
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int n = 1; n <= settings.userPool(); n++) {
+                String userKey = Integer.toString(n);
+                workers.submit(() -> login(userKey));
+            }
+        }
+    }
+
+    private String nextUserKey() {
+        return switch (settings.scenario()) {
+            case "returning" -> Integer.toString(ThreadLocalRandom.current().nextInt(1, settings.userPool() + 1));
+            case "email-fallback" -> "noemail-" + nextNewUser.incrementAndGet();
+            default -> Long.toString(nextNewUser.incrementAndGet());
+        };
+    }
+
+    /** One full login round trip; true when it ended authenticated. */
+    boolean login(String userKey) {
+        Map<String, String> cookies = new LinkedHashMap<>();
+        try {
+            HttpResponse<Void> start = get(settings.appUrl() + "/oauth2/authorization/" + settings.provider(), cookies);
+            String authorizeUrl = location(start);
+            if (start.statusCode() != 302 || authorizeUrl == null) {
+                return false;
+            }
+
+            HttpResponse<Void> authorize = get(authorizeUrl + "&login_hint=" + userKey, null);
+            String callbackUrl = location(authorize);
+            if (authorize.statusCode() != 302 || callbackUrl == null) {
+                return false;
+            }
+
+            HttpResponse<Void> callback = get(callbackUrl, cookies);
+            String target = location(callback);
+            if (callback.statusCode() != 302 || target == null || target.contains("error")) {
+                return false;
+            }
+
+            HttpResponse<String> me = http.send(request(settings.appUrl() + "/api/me", cookies).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            return me.statusCode() == 200 && me.body().contains("\"authenticated\":true");
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private HttpResponse<Void> get(String url, Map<String, String> cookies) throws IOException, InterruptedException {
+        HttpResponse<Void> response = http.send(request(url, cookies).build(), HttpResponse.BodyHandlers.discarding());
+        if (cookies != null) {
+            for (String header : response.headers().allValues("Set-Cookie")) {
+                String pair = header.split(";", 2)[0];
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    String value = pair.substring(eq + 1);
+                    if (value.isEmpty()) {
+                        cookies.remove(pair.substring(0, eq));
+                    } else {
+                        cookies.put(pair.substring(0, eq), value);
+                    }
+                }
+            }
+        }
+        return response;
+    }
+
+    private static HttpRequest.Builder request(String url, Map<String, String> cookies) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(30))
+                .GET();
+        if (cookies != null && !cookies.isEmpty()) {
+            StringBuilder header = new StringBuilder();
+            cookies.forEach((name, value) -> {
+                if (!header.isEmpty()) {
+                    header.append("; ");
+                }
+                header.append(name).append('=').append(value);
+            });
+            builder.header("Cookie", header.toString());
+        }
+        return builder;
+    }
+
+    private static String location(HttpResponse<?> response) {
+        return response.headers().firstValue("Location").orElse(null);
+    }
+}
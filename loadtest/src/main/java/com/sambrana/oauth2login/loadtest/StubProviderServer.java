@@ -0,0 +1,314 @@
+package com.sambrana.oauth2login.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.imageio.ImageIO;
+
+/**
+ * Local stand-in for both Google (OIDC) and GitHub (plain OAuth2).
+ *
+ * Google: {@code /.well-known/openid-configuration}, {@code /google/authorize},
+ * {@code /google/token} (RS256 ID token), {@code /google/userinfo}, {@code /google/jwks}.
+ * GitHub: {@code /github/authorize}, {@code /github/token}, {@code /user},
+ * {@code /user/emails}.
+ *
+ * The authorize endpoints never show a login page: the user is picked by the
+ * {@code login_hint} query parameter the driver appends, and the browser is sent
+ * straight back with a code. User keys are {@code <n>} for a user with a public
+ * email and {@code noemail-<n>} for a GitHub user whose email is only available
+ * from {@code /user/emails}.
+ *
+ * Every endpoint except authorize sleeps {@code latency ± jitter} and fails with
+ * a 503 at {@code errorRate}.
+ */
+public final class StubProviderServer implements AutoCloseable {
+
+    public record Settings(int port, long latencyMillis, long jitterMillis, double errorRate) {
+    }
+
+    private record Grant(String provider, String userKey, String nonce, String clientId) {
+    }
+
+    private final Settings settings;
+    private final HttpServer server;
+    private final String baseUrl;
+    private final RSAKey signingKey;
+    private final ObjectMapper json = new ObjectMapper();
+    private final Map<String, Grant> codes = new ConcurrentHashMap<>();
+    private final Map<String, Grant> accessTokens = new ConcurrentHashMap<>();
+
+    public StubProviderServer(Settings settings) throws IOException, JOSEException {
+        this.settings = settings;
+        this.signingKey = new RSAKeyGenerator(2048).keyID("stub-" + UUID.randomUUID()).generate();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", settings.port()), 1024);
+        this.baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        server.createContext("/.well-known/openid-configuration", exchange -> slow(exchange, this::discovery));
+        server.createContext("/google/authorize", exchange -> authorize(exchange, "google"));
+        server.createContext("/google/token", exchange -> slow(exchange, ex -> token(ex, "google")));
+        server.createContext("/google/userinfo", exchange -> slow(exchange, this::googleUserInfo));
+        server.createContext("/google/jwks", exchange -> slow(exchange, this::jwks));
+        server.createContext("/github/authorize", exchange -> authorize(exchange, "github"));
+        server.createContext("/github/token", exchange -> slow(exchange, ex -> token(ex, "github")));
+        server.createContext("/user/emails", exchange -> slow(exchange, this::githubEmails));
+        server.createContext("/user", exchange -> slow(exchange, this::githubUser));
+        server.createContext("/avatars/", exchange -> slow(exchange, this::avatar));
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    // --- endpoints ---
+
+    private void discovery(HttpExchange exchange) throws IOException {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("issuer", baseUrl);
+        metadata.put("authorization_endpoint", baseUrl + "/google/authorize");
+        metadata.put("token_endpoint", baseUrl + "/google/token");
+        metadata.put("userinfo_endpoint", baseUrl + "/google/userinfo");
+        metadata.put("jwks_uri", baseUrl + "/google/jwks");
+        metadata.put("response_types_supported", List.of("code"));
+        metadata.put("subject_types_supported", List.of("public"));
+        metadata.put("id_token_signing_alg_values_supported", List.of("RS256"));
+        metadata.put("scopes_supported", List.of("openid", "email", "profile"));
+        metadata.put("token_endpoint_auth_methods_supported", List.of("client_secret_basic", "client_secret_post"));
+        metadata.put("grant_types_supported", List.of("authorization_code"));
+        respondJson(exchange, 200, metadata);
+    }
+
+    private void authorize(HttpExchange exchange, String provider) throws IOException {
+        Map<String, String> query = parseForm(exchange.getRequestURI().getRawQuery());
+        String userKey = query.getOrDefault("login_hint", "1");
+        String code = UUID.randomUUID().toString();
+        codes.put(code, new Grant(provider, userKey, query.get("nonce"), query.get("client_id")));
+
+        String location = query.get("redirect_uri")
+                + "?code=" + URLEncoder.encode(code, StandardCharsets.UTF_8)
+                + "&state=" + URLEncoder.encode(query.getOrDefault("state", ""), StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Location", location);
+        exchange.sendResponseHeaders(302, -1);
+        exchange.close();
+    }
+
+    private void token(HttpExchange exchange, String provider) throws IOException {
+        Map<String, String> form = parseForm(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        Grant grant = codes.remove(form.getOrDefault("code", ""));
+        if (grant == null || !grant.provider().equals(provider)) {
+            respondJson(exchange, 400, Map.of("error", "invalid_grant"));
+            return;
+        }
+        String accessToken = UUID.randomUUID().toString();
+        accessTokens.put(accessToken, grant);
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("access_token", accessToken);
+        body.put("token_type", "Bearer");
+        body.put("expires_in", 3600);
+        if ("google".equals(provider)) {
+            body.put("scope", "openid email profile");
+            body.put("id_token", idToken(grant));
+        } else {
+            body.put("scope", "read:user,user:email");
+        }
+        respondJson(exchange, 200, body);
+    }
+
+    private void googleUserInfo(HttpExchange exchange) throws IOException {
+        Grant grant = bearerGrant(exchange);
+        if (grant == null) {
+            respondJson(exchange, 401, Map.of("error", "invalid_token"));
+            return;
+        }
+        respondJson(exchange, 200, Map.of(
+                "sub", "g" + grant.userKey(),
+                "email", "g" + grant.userKey() + "@stub.local",
+                "email_verified", true,
+                "name", "Stub Google " + grant.userKey(),
+                "picture", baseUrl + "/avatars/g" + grant.userKey() + ".png"
+        ));
+    }
+
+    private void githubUser(HttpExchange exchange) throws IOException {
+        Grant grant = bearerGrant(exchange);
+        if (grant == null) {
+            respondJson(exchange, 401, Map.of("message", "Bad credentials"));
+            return;
+        }
+        boolean hiddenEmail = grant.userKey().startsWith("noemail-");
+        long id = githubId(grant.userKey());
+        Map<String, Object> body = new HashMap<>();
+        body.put("id", id);
+        body.put("login", "stub" + id);
+        body.put("name", "Stub GitHub " + id);
+        body.put("avatar_url", baseUrl + "/avatars/" + id + ".png");
+        body.put("email", hiddenEmail ? null : "gh" + id + "@stub.local");
+        respondJson(exchange, 200, body);
+    }
+
+    private void githubEmails(HttpExchange exchange) throws IOException {
+        Grant grant = bearerGrant(exchange);
+        if (grant == null) {
+            respondJson(exchange, 401, Map.of("message", "Bad credentials"));
+            return;
+        }
+        long id = githubId(grant.userKey());
+        respondJson(exchange, 200, List.of(
+                Map.of("email", "gh" + id + "@users.noreply.stub.local", "primary", false, "verified", true),
+                Map.of("email", "gh" + id + "@stub.local", "primary", true, "verified", true)
+        ));
+    }
+
+    private void jwks(HttpExchange exchange) throws IOException {
+        byte[] body = new JWKSet(signingKey.toPublicJWK()).toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        respond(exchange, 200, body);
+    }
+
+    // --- helpers ---
+
+    private String idToken(Grant grant) throws IOException {
+        Instant now = Instant.now();
+        JWTClaimsSet.Builder claims = new JWTClaimsSet.Builder()
+                .issuer(baseUrl)
+                .subject("g" + grant.userKey())
+                .audience(grant.clientId())
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plusSeconds(3600)))
+                .claim("email", "g" + grant.userKey() + "@stub.local")
+                .claim("email_verified", true)
+                .claim("name", "Stub Google " + grant.userKey());
+        if (grant.nonce() != null) {
+            claims.claim("nonce", grant.nonce());
+        }
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(signingKey.getKeyID()).build(),
+                claims.build());
+        try {
+            jwt.sign(new RSASSASigner(signingKey));
+        } catch (JOSEException e) {
+            throw new IOException("Could not sign ID token", e);
+        }
+        return jwt.serialize();
+    }
+
+    private Grant bearerGrant(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return null;
+        }
+        return accessTokens.get(header.substring(7).trim());
+    }
+
+    private static long githubId(String userKey) {
+        return Long.parseLong(userKey.startsWith("noemail-") ? userKey.substring("noemail-".length()) : userKey);
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    /** Applies the configured latency and error injection, then runs the handler. */
+    private void slow(HttpExchange exchange, Handler handler) throws IOException {
+        try {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long jitter = settings.jitterMillis() > 0
+                    ? random.nextLong(-settings.jitterMillis(), settings.jitterMillis() + 1) : 0;
+            long delay = Math.max(0, settings.latencyMillis() + jitter);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            if (settings.errorRate() > 0 && random.nextDouble() < settings.errorRate()) {
+                respondJson(exchange, 503, Map.of("error", "injected_failure"));
+                return;
+            }
+            handler.handle(exchange);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        }
+    }
+
+    /** A 400x400 PNG whose colour is derived from the path, standing in for Google/GitHub image hosts. */
+    private void avatar(HttpExchange exchange) throws IOException {
+        int seed = exchange.getRequestURI().getPath().hashCode();
+        BufferedImage image = new BufferedImage(400, 400, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(seed & 0xFFFFFF));
+        graphics.fillRect(0, 0, 400, 400);
+        graphics.setColor(Color.WHITE);
+        graphics.fillOval(100, 60, 200, 200);
+        graphics.fillOval(40, 260, 320, 280);
+        graphics.dispose();
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        exchange.getResponseHeaders().set("Content-Type", "image/png");
+        respond(exchange, 200, png.toByteArray());
+    }
+
+    private void respondJson(HttpExchange exchange, int status, Object body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        respond(exchange, status, json.writeValueAsBytes(body));
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    static Map<String, String> parseForm(String raw) {
+        Map<String, String> values = new HashMap<>();
+        if (raw == null || raw.isEmpty()) {
+            return values;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            values.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return values;
+    }
+}
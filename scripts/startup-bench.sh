@@ -0,0 +1,56 @@
+#!/usr/bin/env bash
+# Startup time and time-to-first-request: default build vs fast-start build (AOT + CDS).
+#
+#   scripts/startup-bench.sh [runs]
+#
+# Builds once with -Pfast-start (the AOT classes are ignored unless spring.aot.enabled
+# is set, so the same jar also serves as the default build), then starts each variant
+# `runs` times against the configured database and reports, per variant, the median of:
+#   startup  - "Started ... in X seconds" as logged by Spring Boot
+#   first    - wall time from JVM launch to the first 200 from /actuator/health
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RUNS=${1:-5}
+PORT=${PORT:-18080}
+
+./mvnw -q -B -Pfast-start -DskipTests package
+
+JAR=$(ls target/fast-start/oath2-login-demo-*.jar)
+DEFAULT=(java -jar "$JAR")
+FAST=(java -XX:SharedArchiveFile=target/fast-start/app.jsa -Dspring.aot.enabled=true -jar "$JAR"
+      --spring.profiles.active=fast-start)
+
+median() {
+    sort -n | awk '{ v[NR] = $1 } END { print (NR % 2) ? v[(NR + 1) / 2] : (v[NR / 2] + v[NR / 2 + 1]) / 2 }'
+}
+
+measure() {
+    local label=$1; shift
+    local startups=() firsts=()
+    for ((i = 1; i <= RUNS; i++)); do
+        local log
+        log=$(mktemp)
+        local t0
+        t0=$(date +%s%N)
+        "$@" --server.port="$PORT" >"$log" 2>&1 &
+        local pid=$!
+        until curl -fs -o /dev/null "http://127.0.0.1:$PORT/actuator/health"; do
+            if ! kill -0 "$pid" 2>/dev/null; then
+                echo "$label run $i exited early, log: $log" >&2
+                exit 1
+            fi
+            sleep 0.01
+        done
+        firsts+=($(( ($(date +%s%N) - t0) / 1000000 )))
+        startups+=($(grep -oP 'Started \S+ in \K[0-9.]+' "$log" | awk '{ printf "%d", $1 * 1000 }'))
+        kill "$pid"
+        wait "$pid" 2>/dev/null || true
+        rm -f "$log"
+    done
+    printf '%-11s startup=%sms first-request=%sms (median of %d)\n' "$label" \
+        "$(printf '%s\n' "${startups[@]}" | median)" "$(printf '%s\n' "${firsts[@]}" | median)" "$RUNS"
+}
+
+measure default "${DEFAULT[@]}"
+measure fast-start "${FAST[@]}"
@@ -0,0 +1,90 @@
+package com.sambrana.oauth2login.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.oauth2.client.web.AuthorizationRequestRepository;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Keeps the in-flight OAuth2 authorization request in a short-lived sealed
+ * cookie instead of the HTTP session, so the callback can land on any replica.
+ */
+public class CookieOAuth2AuthorizationRequestRepository
+        implements AuthorizationRequestRepository<OAuth2AuthorizationRequest> {
+
+    static final String COOKIE_NAME = "OAUTH2_AUTH_REQUEST";
+    private static final Duration COOKIE_MAX_AGE = Duration.ofMinutes(5);
+
+    // The payload is signed before we deserialize it, but only accept what we wrote anyway
+    private static final ObjectInputFilter ALLOWED_CLASSES = ObjectInputFilter.Config.createFilter(
+            "org.springframework.security.oauth2.core.**;java.lang.*;java.util.*;java.net.URI;!*");
+
+    private final StatelessSessionTokens tokens;
+
+    public CookieOAuth2AuthorizationRequestRepository(StatelessSessionTokens tokens) {
+        this.tokens = tokens;
+    }
+
+    @Override
+    public OAuth2AuthorizationRequest loadAuthorizationRequest(HttpServletRequest request) {
+        String state = request.getParameter(OAuth2ParameterNames.STATE);
+        if (state == null) {
+            return null;
+        }
+        OAuth2AuthorizationRequest authorizationRequest = StatelessSessionTokens.readCookie(request, COOKIE_NAME)
+                .flatMap(tokens.codec()::unseal)
+                .map(CookieOAuth2AuthorizationRequestRepository::deserialize)
+                .orElse(null);
+        return authorizationRequest != null && Objects.equals(state, authorizationRequest.getState())
+                ? authorizationRequest : null;
+    }
+
+    @Override
+    public void saveAuthorizationRequest(OAuth2AuthorizationRequest authorizationRequest,
+                                         HttpServletRequest request, HttpServletResponse response) {
+        if (authorizationRequest == null) {
+            tokens.writeCookie(response, COOKIE_NAME, "", Duration.ZERO);
+            return;
+        }
+        tokens.writeCookie(response, COOKIE_NAME, tokens.codec().seal(serialize(authorizationRequest)), COOKIE_MAX_AGE);
+    }
+
+    @Override
+    public OAuth2AuthorizationRequest removeAuthorizationRequest(HttpServletRequest request,
+                                                                 HttpServletResponse response) {
+        OAuth2AuthorizationRequest authorizationRequest = loadAuthorizationRequest(request);
+        if (authorizationRequest != null) {
+            tokens.writeCookie(response, COOKIE_NAME, "", Duration.ZERO);
+        }
+        return authorizationRequest;
+    }
+
+    private static byte[] serialize(OAuth2AuthorizationRequest authorizationRequest) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(authorizationRequest);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not serialize authorization request", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static OAuth2AuthorizationRequest deserialize(byte[] payload) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            in.setObjectInputFilter(ALLOWED_CLASSES);
+            return (OAuth2AuthorizationRequest) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.sambrana.oauth2login.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
+import org.springframework.web.servlet.resource.CachingResourceResolver;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.PathResourceResolver;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+import org.springframework.web.servlet.resource.ResourceResolver;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves the React production build from this application ({@code app.frontend.mode=bundled}),
+ * so the browser talks to a single origin: no CORS preflights, no cross-site cookies.
+ *
+ * <ul>
+ *   <li>{@code /static/**}: the content-hashed JS/CSS/media, cached for a year as {@code immutable}.</li>
+ *   <li>Everything else not handled by a controller: files at the build root, and
+ *   {@code index.html} for client-side routes such as {@code /profile}. Revalidated on every use.</li>
+ * </ul>
+ * The {@code .br}/{@code .gz} siblings written at build time ({@code npm run build:bundled})
+ * are served to clients that accept them. Large files on disk go out through sendfile.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.frontend.mode", havingValue = "bundled")
+public class FrontendConfig {
+
+    // Paths that are never client-side routes: an unknown API path stays a 404
+    private static final List<String> SERVER_PREFIXES = List.of("api/", "actuator/", "oauth2/", "login/", "logout");
+
+    private final String location;
+    private final DataSize sendfileMinSize;
+
+    public FrontendConfig(@Value("${app.frontend.location:classpath:/static/}") String location,
+                          @Value("${app.frontend.sendfile-min-size:48KB}") DataSize sendfileMinSize) {
+        this.location = location.endsWith("/") ? location : location + "/";
+        this.sendfileMinSize = sendfileMinSize;
+    }
+
+    @Bean
+    public ResourceHttpRequestHandler frontendAssets() {
+        // Resolutions are cached: the set of hashed asset names is fixed for a build
+        return handler(location + "static/",
+                CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable(),
+                new CachingResourceResolver(new ConcurrentMapCache("frontend-assets")),
+                new EncodedResourceResolver(),
+                new PathResourceResolver());
+    }
+
+    @Bean
+    public ResourceHttpRequestHandler frontendPages() {
+        // Not cached: every client-side route path would become an entry
+        return handler(location, CacheControl.noCache(),
+                new EncodedResourceResolver(),
+                new SpaFallbackResourceResolver());
+    }
+
+    @Bean
+    public SimpleUrlHandlerMapping frontendHandlerMapping(ResourceHttpRequestHandler frontendAssets,
+                                                          ResourceHttpRequestHandler frontendPages) {
+        SimpleUrlHandlerMapping mapping = new SimpleUrlHandlerMapping(
+                Map.of("/static/**", frontendAssets, "/**", frontendPages));
+        // After every controller, before Boot's own static-resource mapping
+        mapping.setOrder(Ordered.LOWEST_PRECEDENCE - 2);
+        return mapping;
+    }
+
+    private ResourceHttpRequestHandler handler(String location, CacheControl cacheControl,
+                                               ResourceResolver... resolvers) {
+        ResourceHttpRequestHandler handler = new ResourceHttpRequestHandler();
+        handler.setLocationValues(List.of(location));
+        handler.setCacheControl(cacheControl);
+        handler.setResourceResolvers(List.of(resolvers));
+        handler.setResourceHttpMessageConverter(new SendfileResourceHttpMessageConverter(sendfileMinSize));
+        return handler;
+    }
+
+    /** Answers {@code index.html} for extension-less paths that aren't files, so deep links load the SPA. */
+    private static class SpaFallbackResourceResolver extends PathResourceResolver {
+
+        @Override
+        protected Resource getResource(String resourcePath, Resource location) throws IOException {
+            Resource resource = super.getResource(resourcePath, location);
+            if (resource != null || !isClientRoute(resourcePath)) {
+                return resource;
+            }
+            return super.getResource("index.html", location);
+        }
+
+        private static boolean isClientRoute(String path) {
+            if (path.lastIndexOf('.') > path.lastIndexOf('/')) {
+                return false;
+            }
+            return SERVER_PREFIXES.stream().noneMatch(path::startsWith);
+        }
+    }
+}
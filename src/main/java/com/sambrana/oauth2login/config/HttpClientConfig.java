@@ -0,0 +1,98 @@
+package com.sambrana.oauth2login.config;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Shared outbound HTTP client for provider calls (user-info, GitHub emails).
+ *
+ * One keep-alive connection pool for the whole app, with bounded connect,
+ * pool-acquire and read timeouts so a slow provider can't pin login threads.
+ * Provider calls that run concurrently with the login thread go through
+ * {@code providerCallExecutor}.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient outboundHttpClient(
+            @Value("${app.http-client.max-connections:200}") int maxConnections,
+            @Value("${app.http-client.max-connections-per-route:50}") int maxConnectionsPerRoute,
+            @Value("${app.http-client.connect-timeout:2s}") Duration connectTimeout,
+            @Value("${app.http-client.read-timeout:5s}") Duration readTimeout,
+            @Value("${app.http-client.pool-acquire-timeout:1s}") Duration poolAcquireTimeout
+    ) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout.toMillis()))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeout.toMillis()))
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .build())
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolAcquireTimeout.toMillis()))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeout.toMillis()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .build();
+    }
+
+    @Bean
+    public ClientHttpRequestFactory outboundRequestFactory(CloseableHttpClient outboundHttpClient) {
+        return new HttpComponentsClientHttpRequestFactory(outboundHttpClient);
+    }
+
+    @Bean
+    public RestClient githubRestClient(
+            RestClient.Builder builder,
+            ClientHttpRequestFactory outboundRequestFactory,
+            @Value("${app.github.api-base-url:https://api.github.com}") String apiBaseUrl
+    ) {
+        return builder
+                .baseUrl(apiBaseUrl)
+                .requestFactory(outboundRequestFactory)
+                .build();
+    }
+
+    /**
+     * Runs provider calls fanned out from loadUser. With
+     * {@code spring.threads.virtual.enabled=true} (which also moves Tomcat request
+     * handling onto virtual threads) every call gets its own virtual thread;
+     * otherwise a bounded platform pool is used.
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService providerCallExecutor(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${app.login.provider-fanout.platform-threads:32}") int platformThreads
+    ) {
+        if (virtualThreads) {
+            ThreadFactory factory = Thread.ofVirtual().name("provider-call-", 0).factory();
+            return Executors.newThreadPerTaskExecutor(factory);
+        }
+        ThreadFactory factory = Thread.ofPlatform().name("provider-call-", 0).daemon(true).factory();
+        return Executors.newFixedThreadPool(platformThreads, factory);
+    }
+}
@@ -0,0 +1,118 @@
+package com.sambrana.oauth2login.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.oauth2.client.OAuth2ClientProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.security.oauth2.client.oidc.authentication.OidcIdTokenDecoderFactory;
+import org.springframework.security.oauth2.client.oidc.authentication.OidcIdTokenValidator;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.converter.ClaimTypeConverter;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtDecoderFactory;
+import org.springframework.security.oauth2.jwt.JwtTimestampValidator;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.web.client.RestClient;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Snapshot mode for OIDC providers ({@code app.oidc-metadata.mode=snapshot}).
+ *
+ * Replaces Boot's {@code ClientRegistrationRepository}, which performs a blocking
+ * discovery request per {@code issuer-uri} on every start, with one built from the
+ * local {@link OidcMetadataStore} snapshot, and verifies ID tokens against the
+ * snapshot's cached JWKS instead of fetching it on the first login.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.oidc-metadata.mode", havingValue = "snapshot")
+@EnableConfigurationProperties(OAuth2ClientProperties.class)
+public class OidcMetadataSnapshotConfig {
+
+    @Bean
+    public OidcMetadataStore oidcMetadataStore(
+            OAuth2ClientProperties properties,
+            ObjectMapper objectMapper,
+            ClientHttpRequestFactory outboundRequestFactory,
+            @Value("${app.oidc-metadata.snapshot-file:oidc-metadata.json}") Path snapshotFile,
+            @Value("${app.oidc-metadata.refresh-interval:12h}") Duration refreshInterval,
+            @Value("${app.oidc-metadata.jwks-min-refresh-interval:30s}") Duration jwksMinRefreshInterval
+    ) {
+        List<String> issuers = properties.getProvider().values().stream()
+                .map(OAuth2ClientProperties.Provider::getIssuerUri)
+                .filter(issuer -> issuer != null)
+                .toList();
+        RestClient restClient = RestClient.builder().requestFactory(outboundRequestFactory).build();
+        OidcMetadataStore store = new OidcMetadataStore(snapshotFile, issuers, objectMapper, restClient,
+                refreshInterval, jwksMinRefreshInterval);
+        store.load();
+        return store;
+    }
+
+    @Bean
+    public SnapshotClientRegistrationRepository clientRegistrationRepository(OAuth2ClientProperties properties,
+                                                                             OidcMetadataStore store) {
+        SnapshotClientRegistrationRepository repository = new SnapshotClientRegistrationRepository(properties);
+        repository.apply(store.snapshots());
+        store.onMetadataChange(repository::apply);
+        return repository;
+    }
+
+    @Bean
+    public JwtDecoderFactory<ClientRegistration> idTokenDecoderFactory(OidcMetadataStore store) {
+        OidcIdTokenDecoderFactory fallback = new OidcIdTokenDecoderFactory();
+        Map<String, JwtDecoder> decoders = new ConcurrentHashMap<>();
+        return registration -> decoders.computeIfAbsent(registration.getRegistrationId(), id -> {
+            SnapshotJwkSource keys = store.jwkSource(registration.getProviderDetails().getIssuerUri());
+            return keys == null ? fallback.createDecoder(registration) : snapshotDecoder(registration, keys);
+        });
+    }
+
+    /** What {@link OidcIdTokenDecoderFactory} builds, but verifying against the cached keys. */
+    private static JwtDecoder snapshotDecoder(ClientRegistration registration, SnapshotJwkSource keys) {
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(new JWSVerificationKeySelector<>(signingAlgorithms(registration), keys));
+        // Claims are validated by Spring's validators below
+        processor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+
+        NimbusJwtDecoder decoder = new NimbusJwtDecoder(processor);
+        decoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(
+                new JwtTimestampValidator(), new OidcIdTokenValidator(registration)));
+        decoder.setClaimSetConverter(new ClaimTypeConverter(OidcIdTokenDecoderFactory.createDefaultClaimTypeConverters()));
+        return decoder;
+    }
+
+    private static Set<JWSAlgorithm> signingAlgorithms(ClientRegistration registration) {
+        Object advertised = registration.getProviderDetails().getConfigurationMetadata()
+                .get("id_token_signing_alg_values_supported");
+        Set<JWSAlgorithm> algorithms = new LinkedHashSet<>();
+        if (advertised instanceof List<?> names) {
+            for (Object name : names) {
+                JWSAlgorithm algorithm = JWSAlgorithm.parse(String.valueOf(name));
+                if (JWSAlgorithm.Family.SIGNATURE.contains(algorithm)) {
+                    algorithms.add(algorithm);
+                }
+            }
+        }
+        if (algorithms.isEmpty()) {
+            algorithms.add(JWSAlgorithm.RS256);
+        }
+        return algorithms;
+    }
+}
@@ -0,0 +1,233 @@
+package com.sambrana.oauth2login.config;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.jwk.JWKSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * OIDC discovery metadata and JWKS per issuer, persisted to a local snapshot file.
+ *
+ * On startup the snapshot is read from disk; only an issuer missing from it is
+ * discovered over the network (first boot). After startup a background thread
+ * re-fetches every issuer on {@code refreshInterval}, rewrites the file, updates
+ * the in-memory keys and tells listeners when endpoint metadata changed. A failed
+ * refresh keeps the previous snapshot.
+ */
+public class OidcMetadataStore implements SmartLifecycle {
+
+    /** What the file holds per issuer. */
+    public record Snapshot(String issuer, Instant fetchedAt, Map<String, Object> metadata, Map<String, Object> jwks) {
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(OidcMetadataStore.class);
+
+    private static final TypeReference<Map<String, Snapshot>> FILE_CONTENT = new TypeReference<>() {};
+    private static final ParameterizedTypeReference<Map<String, Object>> JSON_OBJECT =
+            new ParameterizedTypeReference<>() {};
+
+    private final Path file;
+    private final List<String> issuers;
+    private final ObjectMapper objectMapper;
+    private final RestClient restClient;
+    private final Duration refreshInterval;
+    private final Duration jwksMinRefreshInterval;
+
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<String, SnapshotJwkSource> jwkSources = new ConcurrentHashMap<>();
+    private final List<Consumer<Map<String, Snapshot>>> metadataListeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+    private ScheduledExecutorService scheduler;
+
+    public OidcMetadataStore(Path file, List<String> issuers, ObjectMapper objectMapper, RestClient restClient,
+                             Duration refreshInterval, Duration jwksMinRefreshInterval) {
+        this.file = file;
+        this.issuers = issuers.stream().map(OidcMetadataStore::normalize).distinct().toList();
+        this.objectMapper = objectMapper;
+        this.restClient = restClient;
+        this.refreshInterval = refreshInterval;
+        this.jwksMinRefreshInterval = jwksMinRefreshInterval;
+    }
+
+    /** Reads the snapshot file, discovering (and saving) only issuers it doesn't cover. */
+    public void load() {
+        Map<String, Snapshot> stored = readFile();
+        boolean fetched = false;
+        for (String issuer : issuers) {
+            Snapshot snapshot = stored.get(issuer);
+            if (snapshot == null) {
+                logger.info("No OIDC metadata snapshot for {} in {}, discovering it", issuer, file);
+                snapshot = fetch(issuer);
+                fetched = true;
+            } else {
+                logger.info("Using OIDC metadata snapshot for {} from {}", issuer, snapshot.fetchedAt());
+            }
+            snapshots.put(issuer, snapshot);
+            jwkSources.put(issuer, new SnapshotJwkSource(parseJwks(snapshot.jwks()),
+                    () -> refreshJwks(issuer), jwksMinRefreshInterval));
+        }
+        if (fetched) {
+            writeFile();
+        }
+    }
+
+    public Map<String, Snapshot> snapshots() {
+        return Map.copyOf(snapshots);
+    }
+
+    /** Cached keys for the issuer, or null when it isn't managed here. */
+    public SnapshotJwkSource jwkSource(String issuer) {
+        return issuer == null ? null : jwkSources.get(normalize(issuer));
+    }
+
+    /** Called with all snapshots whenever a refresh changed some issuer's endpoint metadata. */
+    public void onMetadataChange(Consumer<Map<String, Snapshot>> listener) {
+        metadataListeners.add(listener);
+    }
+
+    /** Re-fetches metadata and keys for every issuer. */
+    public void refresh() {
+        boolean metadataChanged = false;
+        boolean anyUpdated = false;
+        for (String issuer : issuers) {
+            Snapshot fresh;
+            try {
+                fresh = fetch(issuer);
+            } catch (RuntimeException e) {
+                logger.warn("Background OIDC metadata refresh for {} failed, keeping the snapshot", issuer, e);
+                continue;
+            }
+            Snapshot previous = snapshots.put(issuer, fresh);
+            jwkSources.get(issuer).update(parseJwks(fresh.jwks()));
+            anyUpdated = true;
+            metadataChanged |= previous == null || !Objects.equals(previous.metadata(), fresh.metadata());
+        }
+        if (anyUpdated) {
+            writeFile();
+        }
+        if (metadataChanged) {
+            Map<String, Snapshot> current = snapshots();
+            metadataListeners.forEach(listener -> listener.accept(current));
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "oidc-metadata-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // First refresh right after startup, so a stale snapshot is only used for the boot itself
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            logger.warn("OIDC metadata refresh failed", e);
+        }
+    }
+
+    /** Unknown-kid path of {@link SnapshotJwkSource}: fetch the current keys and persist them. */
+    private JWKSet refreshJwks(String issuer) {
+        Snapshot snapshot = snapshots.get(issuer);
+        Map<String, Object> jwks = get((String) snapshot.metadata().get("jwks_uri"));
+        snapshots.put(issuer, new Snapshot(issuer, Instant.now(), snapshot.metadata(), jwks));
+        writeFile();
+        logger.info("Refreshed JWKS for {} after an unknown key id", issuer);
+        return parseJwks(jwks);
+    }
+
+    private Snapshot fetch(String issuer) {
+        Map<String, Object> metadata = get(issuer + "/.well-known/openid-configuration");
+        if (!issuer.equals(normalize(String.valueOf(metadata.get("issuer"))))) {
+            throw new IllegalStateException("Discovery document for " + issuer
+                    + " names a different issuer: " + metadata.get("issuer"));
+        }
+        Map<String, Object> jwks = get((String) metadata.get("jwks_uri"));
+        return new Snapshot(issuer, Instant.now(), metadata, jwks);
+    }
+
+    private Map<String, Object> get(String uri) {
+        return restClient.get()
+                .uri(URI.create(uri))
+                .retrieve()
+                .body(JSON_OBJECT);
+    }
+
+    private Map<String, Snapshot> readFile() {
+        if (!Files.exists(file)) {
+            return new LinkedHashMap<>();
+        }
+        try {
+            return new LinkedHashMap<>(objectMapper.readValue(file.toFile(), FILE_CONTENT));
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable OIDC metadata snapshot {}", file, e);
+            return new LinkedHashMap<>();
+        }
+    }
+
+    // Write-then-rename, so a crash mid-write never leaves a truncated snapshot. Failing to
+    // persist only costs the next cold start a discovery call, so it is not an error here.
+    private synchronized void writeFile() {
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(temp.toFile(), new LinkedHashMap<>(snapshots));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not write OIDC metadata snapshot {}", file, e);
+        }
+    }
+
+    private static JWKSet parseJwks(Map<String, Object> jwks) {
+        try {
+            return JWKSet.parse(jwks);
+        } catch (ParseException e) {
+            throw new IllegalStateException("Invalid JWKS in OIDC metadata snapshot", e);
+        }
+    }
+
+    private static String normalize(String issuer) {
+        return issuer.endsWith("/") ? issuer.substring(0, issuer.length() - 1) : issuer;
+    }
+}
@@ -0,0 +1,47 @@
+package com.sambrana.oauth2login.config;
+
+import com.sambrana.oauth2login.config.RequestRateLimits.Rejection;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers requests over their group's limit with 429 and {@code Retry-After}
+ * before they reach the OAuth2 filters or the controllers.
+ *
+ * Deliberately not a bean, so Boot doesn't also register it as a servlet filter.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String BODY = "{\"success\":false,\"error\":\"Too many requests\"}";
+
+    private final RequestRateLimits limits;
+
+    public RateLimitFilter(RequestRateLimits limits) {
+        this.limits = limits;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Rejection rejection = limits.check(request);
+        if (rejection == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        rejection.group().rejected().increment();
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(rejection.retryAfterNanos() + 999_999_999L));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write(BODY);
+    }
+}
@@ -0,0 +1,75 @@
+package com.sambrana.oauth2login.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-key token bucket: {@code permits} per {@code period}, bursting up to
+ * {@code burst}. Implemented as GCRA, so each bucket is one {@link AtomicLong}
+ * (the theoretical arrival time of the next request) updated by CAS, with no lock
+ * and no refill timer. Buckets live in a Caffeine map and are dropped after
+ * {@code idleTimeout} without requests; a dropped bucket was full anyway.
+ */
+public class RateLimiter {
+
+    private final String name;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final Cache<String, AtomicLong> buckets;
+    private final Ticker ticker;
+
+    public RateLimiter(String name, int permits, Duration period, int burst, Duration idleTimeout, long maxKeys) {
+        this(name, permits, period, burst, idleTimeout, maxKeys, Ticker.systemTicker());
+    }
+
+    RateLimiter(String name, int permits, Duration period, int burst, Duration idleTimeout, long maxKeys,
+                Ticker ticker) {
+        if (permits < 1 || burst < 1) {
+            throw new IllegalArgumentException("Rate limit " + name + " needs permits and burst >= 1");
+        }
+        this.name = name;
+        this.intervalNanos = period.toNanos() / permits;
+        this.burstNanos = intervalNanos * burst;
+        this.ticker = ticker;
+        this.buckets = Caffeine.newBuilder()
+                .ticker(ticker)
+                .expireAfterAccess(idleTimeout)
+                .maximumSize(maxKeys)
+                .build();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Takes a permit for {@code key}.
+     *
+     * @return 0 if the request may proceed, otherwise the nanoseconds until it would
+     */
+    public long tryAcquire(String key) {
+        AtomicLong bucket = buckets.get(key, k -> new AtomicLong(Long.MIN_VALUE));
+        long now = ticker.read();
+        while (true) {
+            long arrival = bucket.get();
+            long next = Math.max(arrival, now) + intervalNanos;
+            long allowedAt = next - burstNanos;
+            if (allowedAt > now) {
+                return allowedAt - now;
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public long trackedKeys() {
+        // Runs pending maintenance first, so idle or over-limit buckets already dropped aren't counted
+        buckets.cleanUp();
+        return buckets.estimatedSize();
+    }
+}
@@ -0,0 +1,49 @@
+package com.sambrana.oauth2login.config;
+
+import com.sambrana.oauth2login.service.PrimaryPins;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+
+/**
+ * Sends connections for read-only transactions to the replica pool and everything
+ * else (read-write transactions, plain JDBC outside a transaction) to the primary.
+ * Users pinned by {@link PrimaryPins} read from the primary as well.
+ *
+ * The decision is made when the connection is actually fetched, so this must sit
+ * behind a {@code LazyConnectionDataSourceProxy}: the transaction manager opens the
+ * connection before the read-only flag of the transaction is published.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    enum Target { PRIMARY, REPLICA }
+
+    private final HikariDataSource primary;
+    private final HikariDataSource replica;
+    private final PrimaryPins primaryPins;
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, HikariDataSource replica, PrimaryPins primaryPins) {
+        this.primary = primary;
+        this.replica = replica;
+        this.primaryPins = primaryPins;
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !primaryPins.isCurrentUserPinned()) {
+            return Target.REPLICA;
+        }
+        return Target.PRIMARY;
+    }
+
+    @Override
+    public void destroy() {
+        replica.close();
+        primary.close();
+    }
+}
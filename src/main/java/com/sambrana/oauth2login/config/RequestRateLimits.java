@@ -0,0 +1,101 @@
+package com.sambrana.oauth2login.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.servlet.util.matcher.PathPatternRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The rate-limited route groups:
+ * <ul>
+ *   <li>{@code login}: {@code /oauth2/authorization/**} and {@code /login/oauth2/code/**},
+ *   per client IP. Each of these costs a provider round trip and a provisioning write.</li>
+ *   <li>{@code profile-write}: {@code POST} and {@code PATCH /api/profile}, sharing one budget,
+ *   per authenticated user, or per client IP when there is none.</li>
+ * </ul>
+ * The client IP is {@code request.getRemoteAddr()}; behind a proxy, set
+ * {@code server.forward-headers-strategy} so that is the real client.
+ */
+@Component
+@ConditionalOnProperty(name = "app.rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class RequestRateLimits {
+
+    public record Group(RateLimiter limiter, RequestMatcher matcher, boolean perUser, Counter rejected) {
+    }
+
+    /** A throttled request: which group, and how long until it would be allowed. */
+    public record Rejection(Group group, long retryAfterNanos) {
+    }
+
+    private final List<Group> groups;
+
+    public RequestRateLimits(MeterRegistry meterRegistry,
+                             @Value("${app.rate-limit.idle-timeout:10m}") Duration idleTimeout,
+                             @Value("${app.rate-limit.max-clients:100000}") long maxClients,
+                             @Value("${app.rate-limit.login.permits:20}") int loginPermits,
+                             @Value("${app.rate-limit.login.period:1m}") Duration loginPeriod,
+                             @Value("${app.rate-limit.login.burst:10}") int loginBurst,
+                             @Value("${app.rate-limit.profile-write.permits:30}") int profilePermits,
+                             @Value("${app.rate-limit.profile-write.period:1m}") Duration profilePeriod,
+                             @Value("${app.rate-limit.profile-write.burst:10}") int profileBurst) {
+        PathPatternRequestMatcher.Builder paths = PathPatternRequestMatcher.withDefaults();
+        RateLimiter login = new RateLimiter("login", loginPermits, loginPeriod, loginBurst, idleTimeout, maxClients);
+        RateLimiter profileWrite = new RateLimiter("profile-write", profilePermits, profilePeriod, profileBurst,
+                idleTimeout, maxClients);
+        this.groups = List.of(
+                group(meterRegistry, login, false,
+                        new OrRequestMatcher(paths.matcher("/oauth2/authorization/**"),
+                                paths.matcher("/login/oauth2/code/**"))),
+                group(meterRegistry, profileWrite, true,
+                        new OrRequestMatcher(paths.matcher(HttpMethod.POST, "/api/profile"),
+                                paths.matcher(HttpMethod.PATCH, "/api/profile"))));
+    }
+
+    private static Group group(MeterRegistry meterRegistry, RateLimiter limiter, boolean perUser,
+                               RequestMatcher matcher) {
+        Counter rejected = Counter.builder("http.rate_limited")
+                .description("Requests rejected with 429 by the in-process rate limiter")
+                .tag("group", limiter.name())
+                .register(meterRegistry);
+        Gauge.builder("http.rate_limited.clients", limiter, RateLimiter::trackedKeys)
+                .description("Client keys with a live rate-limit bucket")
+                .tag("group", limiter.name())
+                .register(meterRegistry);
+        return new Group(limiter, matcher, perUser, rejected);
+    }
+
+    /** Null if the request may proceed (or isn't limited at all). */
+    public Rejection check(HttpServletRequest request) {
+        for (Group group : groups) {
+            if (group.matcher().matches(request)) {
+                long wait = group.limiter().tryAcquire(clientKey(request, group.perUser()));
+                return wait == 0 ? null : new Rejection(group, wait);
+            }
+        }
+        return null;
+    }
+
+    private static String clientKey(HttpServletRequest request, boolean perUser) {
+        if (perUser) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication != null && authentication.isAuthenticated()
+                    && !(authentication instanceof AnonymousAuthenticationToken)) {
+                return "user:" + authentication.getName();
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
@@ -2,10 +2,13 @@ package com.sambrana.oauth2login.config;
 
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import java.io.IOException;
 
+// Only for the separate dev server; a bundled frontend is same-origin (see FrontendConfig)
 @Component
+@ConditionalOnProperty(name = "app.frontend.mode", havingValue = "dev-server", matchIfMissing = true)
 public class SameSiteCookieFilter implements Filter {
 
     @Override
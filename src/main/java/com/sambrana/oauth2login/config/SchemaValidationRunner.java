@@ -0,0 +1,53 @@
+package com.sambrana.oauth2login.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.tool.schema.spi.SchemaManagementException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Validates the mapped entities against the database schema after startup, on a
+ * background thread, instead of having Hibernate inspect (or update) the schema
+ * while the context is starting. A mismatch is logged as an error; it does not
+ * take the running instance down.
+ *
+ * Enabled with {@code app.schema.validate-in-background=true} (the fast-start
+ * profile, which also sets {@code ddl-auto: none}).
+ */
+@Component
+@ConditionalOnProperty(name = "app.schema.validate-in-background", havingValue = "true")
+public class SchemaValidationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaValidationRunner.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public SchemaValidationRunner(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void validateInBackground() {
+        Thread.ofVirtual().name("schema-validation").start(this::validate);
+    }
+
+    private void validate() {
+        long start = System.nanoTime();
+        try {
+            entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                    .getSchemaManager()
+                    .validateMappedObjects();
+            logger.info("Database schema matches the entity mappings ({} ms)",
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (SchemaManagementException e) {
+            logger.error("Database schema does not match the entity mappings: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Background schema validation could not run", e);
+        }
+    }
+}
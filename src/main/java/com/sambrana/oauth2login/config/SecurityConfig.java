@@ -1,14 +1,29 @@
 package com.sambrana.oauth2login.config;
 
 import com.sambrana.oauth2login.config.OAuth2LoginSuccessHandler;
+import com.sambrana.oauth2login.service.AdminAccess;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.web.OAuth2AuthorizedClientRepository;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.oauth2.client.web.OAuth2AuthorizationRequestRedirectFilter;
+import org.springframework.security.web.context.SecurityContextHolderFilter;
 import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
 import org.springframework.security.web.csrf.CsrfTokenRequestAttributeHandler;
+import org.springframework.security.web.servlet.util.matcher.PathPatternRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import org.springframework.web.cors.CorsConfiguration;
@@ -24,6 +39,27 @@ public class SecurityConfig {
     @Autowired
     private OAuth2LoginSuccessHandler oAuth2LoginSuccessHandler;
 
+    // Only present when app.session.mode=stateless
+    @Autowired
+    private ObjectProvider<StatelessSessionTokens> statelessSessionTokens;
+
+    @Autowired
+    private AdminAccess adminAccess;
+
+    // Absent when app.rate-limit.enabled=false
+    @Autowired
+    private ObjectProvider<RequestRateLimits> requestRateLimits;
+
+    @Value("${app.session.mode:stateful}")
+    private String sessionMode;
+
+    // dev-server: the React dev server on another origin calls the API (CORS); bundled: FrontendConfig serves it
+    @Value("${app.frontend.mode:dev-server}")
+    private String frontendMode;
+
+    @Value("${app.frontend.origin:http://localhost:3000}")
+    private String frontendOrigin;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
 
@@ -38,10 +74,19 @@ public class SecurityConfig {
             .cors(withDefaults())
             .authorizeHttpRequests(authz -> authz
                 .requestMatchers("/", "/error", "/api/me", "/api/csrf").permitAll()
+                .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
+                // Avatars are public images, loaded by <img> tags and shared caches without a session
+                .requestMatchers("/api/avatar/**").permitAll()
+                // Bundled frontend: the SPA shell, its client-side routes and hashed assets
+                .requestMatchers(bundledFrontendPages()).permitAll()
+                .requestMatchers("/api/admin/**").access((authentication, context) ->
+                    new AuthorizationDecision(adminAccess.isAdmin(authentication.get())))
                 .anyRequest().authenticated()
             )
             .oauth2Login(oauth2 -> oauth2
                 .successHandler(this.oAuth2LoginSuccessHandler)
+                // We never call provider APIs after login, so don't keep an access token per user on the heap
+                .authorizedClientRepository(new DiscardingAuthorizedClientRepository())
             )
             .logout(logout -> logout // Logout config
                 .logoutUrl("/logout")
@@ -58,15 +103,78 @@ public class SecurityConfig {
                 .csrfTokenRequestHandler(new CsrfTokenRequestAttributeHandler())
             );
 
+        if ("stateless".equals(sessionMode)) {
+            configureStatelessSessions(http, statelessSessionTokens.getObject());
+        }
+
+        if ("bundled".equals(frontendMode)) {
+            // Same origin: nothing for CORS to allow
+            http.cors(cors -> cors.disable());
+        }
+
+        // After the security context is loaded (profile writes are limited per user),
+        // before the login redirect and callback filters call out to the provider
+        requestRateLimits.ifAvailable(limits ->
+            http.addFilterBefore(new RateLimitFilter(limits), OAuth2AuthorizationRequestRedirectFilter.class));
+
         return http.build();
     }
 
+    /**
+     * Stateless mode: no HttpSession at all. The login round trip keeps its
+     * authorization request in a sealed cookie, the authenticated user is carried
+     * by the signed session cookie, and nothing is kept per user on the node.
+     */
+    private void configureStatelessSessions(HttpSecurity http, StatelessSessionTokens tokens) throws Exception {
+        http
+            .sessionManagement(session -> session
+                .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+            )
+            .addFilterAfter(new StatelessSessionFilter(tokens), SecurityContextHolderFilter.class)
+            .oauth2Login(oauth2 -> oauth2
+                .authorizationEndpoint(endpoint -> endpoint
+                    .authorizationRequestRepository(new CookieOAuth2AuthorizationRequestRepository(tokens))
+                )
+            )
+            .logout(logout -> logout
+                .addLogoutHandler((request, response, authentication) -> tokens.clear(response))
+            );
+    }
+
+    /** Single-segment GETs (/, /profile, /favicon.ico, ...) and /static/**, only when the app serves the frontend. */
+    private RequestMatcher bundledFrontendPages() {
+        if (!"bundled".equals(frontendMode)) {
+            return request -> false;
+        }
+        PathPatternRequestMatcher.Builder paths = PathPatternRequestMatcher.withDefaults();
+        return new OrRequestMatcher(paths.matcher(HttpMethod.GET, "/*"), paths.matcher(HttpMethod.GET, "/static/**"));
+    }
+
+    private static class DiscardingAuthorizedClientRepository implements OAuth2AuthorizedClientRepository {
+
+        @Override
+        public <T extends OAuth2AuthorizedClient> T loadAuthorizedClient(String clientRegistrationId,
+                Authentication principal, HttpServletRequest request) {
+            return null;
+        }
+
+        @Override
+        public void saveAuthorizedClient(OAuth2AuthorizedClient authorizedClient, Authentication principal,
+                HttpServletRequest request, HttpServletResponse response) {
+        }
+
+        @Override
+        public void removeAuthorizedClient(String clientRegistrationId, Authentication principal,
+                HttpServletRequest request, HttpServletResponse response) {
+        }
+    }
+
     // CORS Bean remains the same
     @Bean
     CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
-        configuration.setAllowedOrigins(Arrays.asList("http://localhost:3000"));
-        configuration.setAllowedMethods(Arrays.asList("GET","POST", "PUT", "DELETE", "OPTIONS"));
+        configuration.setAllowedOrigins(Arrays.asList(frontendOrigin));
+        configuration.setAllowedMethods(Arrays.asList("GET","POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
         configuration.setAllowCredentials(true);
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
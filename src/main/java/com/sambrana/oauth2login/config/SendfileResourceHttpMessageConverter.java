@@ -0,0 +1,64 @@
+package com.sambrana.oauth2login.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Hands large files on disk to Tomcat's sendfile instead of copying them through
+ * the JVM: the body goes from the page cache to the socket without passing
+ * through user-space buffers. Uses the same request attributes as Tomcat's
+ * DefaultServlet; anything that isn't a plain file (classpath entries inside the
+ * jar), smaller than the threshold, or served by a connector without sendfile is
+ * written as usual.
+ */
+class SendfileResourceHttpMessageConverter extends ResourceHttpMessageConverter {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final long minSize;
+
+    SendfileResourceHttpMessageConverter(DataSize minSize) {
+        super(false);
+        this.minSize = minSize.toBytes();
+    }
+
+    @Override
+    protected void writeContent(Resource resource, HttpOutputMessage outputMessage) throws IOException {
+        HttpServletRequest request = currentRequest();
+        File file = fileOf(resource);
+        if (request != null && file != null && file.length() >= minSize
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Content-Length is already set from the resource; Tomcat writes the body after we return
+            request.setAttribute(SENDFILE_FILENAME, file.getAbsolutePath());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, file.length());
+            return;
+        }
+        super.writeContent(resource, outputMessage);
+    }
+
+    private static HttpServletRequest currentRequest() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                ? attributes.getRequest() : null;
+    }
+
+    private static File fileOf(Resource resource) {
+        try {
+            File file = resource.getFile();
+            return file.isFile() ? file : null;
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+}
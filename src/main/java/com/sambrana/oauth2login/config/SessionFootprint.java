@@ -0,0 +1,66 @@
+package com.sambrana.oauth2login.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+/**
+ * Measures what a login costs in session storage: the serialized size of the
+ * security context, once with the authentication the provider handed us and
+ * once with the compact principal we actually keep. Published as the
+ * {@code session.principal.bytes} summary tagged {@code form=original|compact}.
+ *
+ * Off by default because it serializes twice per login; switch on with
+ * {@code app.session.measure-footprint=true} while comparing.
+ */
+@Component
+public class SessionFootprint {
+
+    private final boolean enabled;
+    private final DistributionSummary original;
+    private final DistributionSummary compact;
+
+    public SessionFootprint(MeterRegistry meterRegistry,
+                            @Value("${app.session.measure-footprint:false}") boolean enabled) {
+        this.enabled = enabled;
+        this.original = summary(meterRegistry, "original");
+        this.compact = summary(meterRegistry, "compact");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void record(Authentication providerAuthentication, Authentication storedAuthentication) {
+        if (!enabled) {
+            return;
+        }
+        original.record(serializedSize(providerAuthentication));
+        compact.record(serializedSize(storedAuthentication));
+    }
+
+    static int serializedSize(Authentication authentication) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new SecurityContextImpl(authentication));
+        } catch (IOException e) {
+            return -1;
+        }
+        return bytes.size();
+    }
+
+    private static DistributionSummary summary(MeterRegistry meterRegistry, String form) {
+        return DistributionSummary.builder("session.principal.bytes")
+                .description("Serialized security context size per login")
+                .baseUnit("bytes")
+                .tag("form", form)
+                .register(meterRegistry);
+    }
+}
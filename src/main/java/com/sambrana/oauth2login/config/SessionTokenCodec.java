@@ -0,0 +1,216 @@
+package com.sambrana.oauth2login.config;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Seals small payloads into compact, URL-safe tokens that any node holding the
+ * keys can verify locally.
+ *
+ * Format: {@code <version>.<kid>.<body>.<hmac>} where body is base64url of the
+ * payload ({@code v1}) or of {@code iv || AES-GCM ciphertext} ({@code v1e}),
+ * and the HMAC-SHA256 covers everything before the last dot.
+ *
+ * Keys are {@code kid:base64-secret} pairs. The first one signs new tokens; the
+ * rest are only accepted for verification, which is how keys are rotated:
+ * prepend the new key, keep the old one until {@code max-lifetime} has passed,
+ * then drop it.
+ *
+ * Session claims carry the original login time next to issue and expiry times, so
+ * a token that keeps being re-issued still dies {@code maxLifetime} after login.
+ */
+public class SessionTokenCodec {
+
+    /** What a session token asserts about its holder; {@code authenticatedAt} survives re-issuing. */
+    public record Claims(long userId, String email, String provider, Instant authenticatedAt,
+                         Instant issuedAt, Instant expiresAt) {
+    }
+
+    private static final String PLAIN = "v1";
+    private static final String ENCRYPTED = "v1e";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final int MIN_SECRET_BYTES = 32;
+
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64D = Base64.getUrlDecoder();
+
+    private record Key(String id, SecretKeySpec macKey, SecretKeySpec encKey) {
+    }
+
+    private final List<Key> keys;
+    private final Map<String, Key> keysById = new LinkedHashMap<>();
+    private final boolean encrypt;
+    private final Duration maxLifetime;
+    private final ObjectMapper objectMapper;
+    private final SecureRandom random = new SecureRandom();
+
+    public SessionTokenCodec(List<String> keySpecs, boolean encrypt, Duration maxLifetime, ObjectMapper objectMapper) {
+        if (keySpecs == null || keySpecs.isEmpty()) {
+            throw new IllegalStateException("At least one session token key (kid:base64-secret) is required");
+        }
+        List<Key> parsed = new ArrayList<>();
+        for (String spec : keySpecs) {
+            Key key = parseKey(spec.trim());
+            parsed.add(key);
+            keysById.put(key.id(), key);
+        }
+        this.keys = List.copyOf(parsed);
+        this.encrypt = encrypt;
+        this.maxLifetime = maxLifetime;
+        this.objectMapper = objectMapper;
+    }
+
+    public String seal(byte[] payload) {
+        Key key = keys.get(0);
+        String version = encrypt ? ENCRYPTED : PLAIN;
+        byte[] body = encrypt ? encrypt(key, payload) : payload;
+        String signingInput = version + "." + key.id() + "." + B64.encodeToString(body);
+        return signingInput + "." + B64.encodeToString(mac(key, signingInput));
+    }
+
+    /** Returns the payload if the token is well-formed and signed by a known key. */
+    public Optional<byte[]> unseal(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        String[] parts = token.split("\\.", -1);
+        if (parts.length != 4 || !(PLAIN.equals(parts[0]) || ENCRYPTED.equals(parts[0]))) {
+            return Optional.empty();
+        }
+        Key key = keysById.get(parts[1]);
+        if (key == null) {
+            return Optional.empty();
+        }
+        try {
+            String signingInput = parts[0] + "." + parts[1] + "." + parts[2];
+            if (!MessageDigest.isEqual(mac(key, signingInput), B64D.decode(parts[3]))) {
+                return Optional.empty();
+            }
+            byte[] body = B64D.decode(parts[2]);
+            return Optional.of(ENCRYPTED.equals(parts[0]) ? decrypt(key, body) : body);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return Optional.empty();
+        }
+    }
+
+    public String encode(Claims claims) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("uid", claims.userId());
+        body.put("em", claims.email());
+        body.put("pv", claims.provider());
+        body.put("auth", claims.authenticatedAt().getEpochSecond());
+        body.put("iat", claims.issuedAt().getEpochSecond());
+        body.put("exp", claims.expiresAt().getEpochSecond());
+        try {
+            return seal(objectMapper.writeValueAsBytes(body));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode session token", e);
+        }
+    }
+
+    /** Verifies signature, expiry and the absolute lifetime, and returns the claims. */
+    public Optional<Claims> decode(String token, Instant now) {
+        return unseal(token).flatMap(payload -> {
+            try {
+                Map<String, Object> body = objectMapper.readValue(payload, new TypeReference<Map<String, Object>>() {});
+                long issuedAt = ((Number) body.get("iat")).longValue();
+                // Tokens from before "auth" existed count from their last issue
+                Number authenticatedAt = (Number) body.getOrDefault("auth", issuedAt);
+                Claims claims = new Claims(
+                        ((Number) body.get("uid")).longValue(),
+                        (String) body.get("em"),
+                        (String) body.get("pv"),
+                        Instant.ofEpochSecond(authenticatedAt.longValue()),
+                        Instant.ofEpochSecond(issuedAt),
+                        Instant.ofEpochSecond(((Number) body.get("exp")).longValue())
+                );
+                boolean live = now.isBefore(claims.expiresAt())
+                        && now.isBefore(claims.authenticatedAt().plus(maxLifetime));
+                return live ? Optional.of(claims) : Optional.empty();
+            } catch (IOException | RuntimeException e) {
+                return Optional.empty();
+            }
+        });
+    }
+
+    private byte[] encrypt(Key key, byte[] plaintext) {
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, key.encKey(), new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(key.id().getBytes(StandardCharsets.UTF_8));
+            byte[] ciphertext = cipher.doFinal(plaintext);
+            return ByteBuffer.allocate(iv.length + ciphertext.length).put(iv).put(ciphertext).array();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not encrypt session token", e);
+        }
+    }
+
+    private byte[] decrypt(Key key, byte[] body) {
+        if (body.length <= IV_LENGTH) {
+            throw new IllegalStateException("Encrypted token body too short");
+        }
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, key.encKey(),
+                    new GCMParameterSpec(TAG_BITS, Arrays.copyOfRange(body, 0, IV_LENGTH)));
+            cipher.updateAAD(key.id().getBytes(StandardCharsets.UTF_8));
+            return cipher.doFinal(body, IV_LENGTH, body.length - IV_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not decrypt session token", e);
+        }
+    }
+
+    private static byte[] mac(Key key, String signingInput) {
+        return hmac(key.macKey(), signingInput.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static Key parseKey(String spec) {
+        int colon = spec.indexOf(':');
+        if (colon <= 0) {
+            throw new IllegalStateException("Session token key must be 'kid:base64-secret'");
+        }
+        String id = spec.substring(0, colon);
+        byte[] secret = Base64.getDecoder().decode(spec.substring(colon + 1));
+        if (secret.length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("Session token key '" + id + "' must be at least " + MIN_SECRET_BYTES + " bytes");
+        }
+        // Separate sub-keys for signing and encryption, derived from the one secret
+        SecretKeySpec master = new SecretKeySpec(secret, "HmacSHA256");
+        byte[] macKey = hmac(master, "mac".getBytes(StandardCharsets.US_ASCII));
+        byte[] encKey = hmac(master, "enc".getBytes(StandardCharsets.US_ASCII));
+        return new Key(id, new SecretKeySpec(macKey, "HmacSHA256"), new SecretKeySpec(encKey, "AES"));
+    }
+
+    private static byte[] hmac(SecretKeySpec key, byte[] data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            return mac.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+}
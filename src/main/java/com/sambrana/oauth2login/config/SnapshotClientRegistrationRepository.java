@@ -0,0 +1,89 @@
+package com.sambrana.oauth2login.config;
+
+import com.sambrana.oauth2login.config.OidcMetadataStore.Snapshot;
+import org.springframework.boot.autoconfigure.security.oauth2.client.OAuth2ClientProperties;
+import org.springframework.boot.autoconfigure.security.oauth2.client.OAuth2ClientPropertiesMapper;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.core.oidc.IdTokenClaimNames;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Client registrations built from {@code spring.security.oauth2.client.*}, with every
+ * {@code issuer-uri} provider resolved from an {@link OidcMetadataStore} snapshot
+ * instead of a discovery request. Rebuilt when a background refresh brings new
+ * endpoint metadata.
+ */
+public class SnapshotClientRegistrationRepository implements ClientRegistrationRepository, Iterable<ClientRegistration> {
+
+    private final OAuth2ClientProperties properties;
+    private volatile Map<String, ClientRegistration> registrations = Map.of();
+
+    public SnapshotClientRegistrationRepository(OAuth2ClientProperties properties) {
+        this.properties = properties;
+    }
+
+    public void apply(Map<String, Snapshot> snapshots) {
+        // Same properties, but with snapshot endpoints in place of issuer-uri so the mapper never goes to the network
+        OAuth2ClientProperties resolved = new OAuth2ClientProperties();
+        resolved.getRegistration().putAll(properties.getRegistration());
+        properties.getProvider().forEach((providerId, provider) -> {
+            Snapshot snapshot = snapshotFor(provider, snapshots);
+            resolved.getProvider().put(providerId, snapshot == null ? provider : fromSnapshot(provider, snapshot));
+        });
+
+        Map<String, ClientRegistration> built = new LinkedHashMap<>();
+        new OAuth2ClientPropertiesMapper(resolved).asClientRegistrations().forEach((registrationId, registration) -> {
+            String providerId = properties.getRegistration().get(registrationId).getProvider();
+            OAuth2ClientProperties.Provider provider = properties.getProvider()
+                    .get(providerId != null ? providerId : registrationId);
+            Snapshot snapshot = provider == null ? null : snapshotFor(provider, snapshots);
+            if (snapshot != null) {
+                // Keep the issuer for ID token "iss" validation and the metadata for end-session discovery
+                registration = ClientRegistration.withClientRegistration(registration)
+                        .issuerUri(snapshot.issuer())
+                        .providerConfigurationMetadata(snapshot.metadata())
+                        .build();
+            }
+            built.put(registrationId, registration);
+        });
+        registrations = Collections.unmodifiableMap(built);
+    }
+
+    @Override
+    public ClientRegistration findByRegistrationId(String registrationId) {
+        return registrations.get(registrationId);
+    }
+
+    @Override
+    public Iterator<ClientRegistration> iterator() {
+        return registrations.values().iterator();
+    }
+
+    private static Snapshot snapshotFor(OAuth2ClientProperties.Provider provider, Map<String, Snapshot> snapshots) {
+        String issuer = provider.getIssuerUri();
+        if (issuer == null) {
+            return null;
+        }
+        return snapshots.get(issuer.endsWith("/") ? issuer.substring(0, issuer.length() - 1) : issuer);
+    }
+
+    private static OAuth2ClientProperties.Provider fromSnapshot(OAuth2ClientProperties.Provider configured,
+                                                                 Snapshot snapshot) {
+        Map<String, Object> metadata = snapshot.metadata();
+        OAuth2ClientProperties.Provider provider = new OAuth2ClientProperties.Provider();
+        provider.setAuthorizationUri((String) metadata.get("authorization_endpoint"));
+        provider.setTokenUri((String) metadata.get("token_endpoint"));
+        provider.setUserInfoUri((String) metadata.get("userinfo_endpoint"));
+        provider.setJwkSetUri((String) metadata.get("jwks_uri"));
+        provider.setUserInfoAuthenticationMethod(configured.getUserInfoAuthenticationMethod());
+        provider.setUserNameAttribute(configured.getUserNameAttribute() != null
+                ? configured.getUserNameAttribute()
+                : IdTokenClaimNames.SUB);
+        return provider;
+    }
+}
@@ -0,0 +1,65 @@
+package com.sambrana.oauth2login.config;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * In-memory JWKS for one issuer, seeded from the metadata snapshot.
+ *
+ * ID tokens are verified against the cached keys without a network call. A token
+ * signed with a {@code kid} the cache doesn't know means the provider rotated its
+ * keys: the set is re-fetched (at most once per {@code minRefreshInterval}, so a
+ * stream of bogus tokens can't hammer the provider) and the lookup retried.
+ */
+final class SnapshotJwkSource implements JWKSource<SecurityContext> {
+
+    private final Supplier<JWKSet> fetcher;
+    private final long minRefreshNanos;
+
+    private volatile JWKSet keys;
+    private volatile long lastFetchNanos;
+
+    SnapshotJwkSource(JWKSet initialKeys, Supplier<JWKSet> fetcher, Duration minRefreshInterval) {
+        this.keys = initialKeys;
+        this.fetcher = fetcher;
+        this.minRefreshNanos = minRefreshInterval.toNanos();
+        this.lastFetchNanos = System.nanoTime() - minRefreshNanos;
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+        List<JWK> matches = jwkSelector.select(keys);
+        if (!matches.isEmpty()) {
+            return matches;
+        }
+        return jwkSelector.select(refreshForUnknownKey());
+    }
+
+    /** Replaces the cached keys, e.g. after the periodic background refresh. */
+    void update(JWKSet newKeys) {
+        keys = newKeys;
+        lastFetchNanos = System.nanoTime();
+    }
+
+    private synchronized JWKSet refreshForUnknownKey() throws KeySourceException {
+        if (System.nanoTime() - lastFetchNanos < minRefreshNanos) {
+            // Fetched recently (possibly by the thread we waited on); use what we have
+            return keys;
+        }
+        try {
+            update(fetcher.get());
+        } catch (RuntimeException e) {
+            lastFetchNanos = System.nanoTime();
+            throw new KeySourceException("Could not refresh JWKS after an unknown key id", e);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,49 @@
+package com.sambrana.oauth2login.config;
+
+import com.sambrana.oauth2login.config.SessionTokenCodec.Claims;
+import com.sambrana.oauth2login.service.AppUserPrincipal;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Authenticates requests from the signed session cookie in stateless mode.
+ * The resulting principal exposes the same "email" attribute the controllers
+ * read from a session-backed login, so they need no session lookup at all.
+ *
+ * Deliberately not a bean, so Boot doesn't also register it as a servlet filter.
+ */
+public class StatelessSessionFilter extends OncePerRequestFilter {
+
+    private final StatelessSessionTokens tokens;
+
+    public StatelessSessionFilter(StatelessSessionTokens tokens) {
+        this.tokens = tokens;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            tokens.read(request).ifPresent(claims -> {
+                SecurityContext context = SecurityContextHolder.createEmptyContext();
+                context.setAuthentication(toAuthentication(claims));
+                SecurityContextHolder.setContext(context);
+                tokens.refreshIfAging(claims, response);
+            });
+        }
+        chain.doFilter(request, response);
+    }
+
+    static OAuth2AuthenticationToken toAuthentication(Claims claims) {
+        AppUserPrincipal principal = new AppUserPrincipal(claims.userId(), claims.email(), claims.provider());
+        return new OAuth2AuthenticationToken(principal, principal.getAuthorities(), claims.provider().toLowerCase());
+    }
+}
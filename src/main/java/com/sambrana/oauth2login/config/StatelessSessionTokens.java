@@ -0,0 +1,130 @@
+package com.sambrana.oauth2login.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sambrana.oauth2login.config.SessionTokenCodec.Claims;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Issues and reads the signed session cookie used when
+ * {@code app.session.mode=stateless}. The cookie replaces JSESSIONID: it carries
+ * the user id, email and provider, so any replica can authenticate a request
+ * without a session store.
+ *
+ * The cookie slides: it is re-issued once half of {@code max-age} has passed, but
+ * never past {@code max-lifetime} after the login itself.
+ */
+@Component
+@ConditionalOnProperty(name = "app.session.mode", havingValue = "stateless")
+public class StatelessSessionTokens {
+
+    private final SessionTokenCodec codec;
+    private final Duration maxAge;
+    private final Duration maxLifetime;
+    private final String cookieName;
+    private final boolean secureCookie;
+    private final Clock clock;
+
+    @Autowired
+    public StatelessSessionTokens(
+            ObjectMapper objectMapper,
+            @Value("${app.session.token.keys:}") List<String> keys,
+            @Value("${app.session.token.encrypt:false}") boolean encrypt,
+            @Value("${app.session.token.max-age:8h}") Duration maxAge,
+            @Value("${app.session.token.max-lifetime:24h}") Duration maxLifetime,
+            @Value("${app.session.token.cookie-name:APP_SESSION}") String cookieName,
+            @Value("${app.session.token.secure-cookie:false}") boolean secureCookie
+    ) {
+        this(objectMapper, keys, encrypt, maxAge, maxLifetime, cookieName, secureCookie, Clock.systemUTC());
+    }
+
+    StatelessSessionTokens(ObjectMapper objectMapper, List<String> keys, boolean encrypt, Duration maxAge,
+                           Duration maxLifetime, String cookieName, boolean secureCookie, Clock clock) {
+        this.codec = new SessionTokenCodec(keys, encrypt, maxLifetime, objectMapper);
+        this.maxAge = maxAge;
+        this.maxLifetime = maxLifetime;
+        this.cookieName = cookieName;
+        this.secureCookie = secureCookie;
+        this.clock = clock;
+    }
+
+    /** Starts a session at login. */
+    public void issue(HttpServletResponse response, long userId, String email, String provider) {
+        issue(response, userId, email, provider, clock.instant());
+    }
+
+    public Optional<Claims> read(HttpServletRequest request) {
+        return readCookie(request, cookieName).flatMap(token -> codec.decode(token, clock.instant()));
+    }
+
+    /**
+     * Sliding expiry: re-issues the cookie once half of its lifetime has passed, keeping the
+     * original login time. Once the expiry has reached the absolute lifetime it is left to lapse.
+     */
+    public void refreshIfAging(Claims claims, HttpServletResponse response) {
+        Instant now = clock.instant();
+        if (now.isAfter(claims.issuedAt().plus(maxAge.dividedBy(2)))
+                && claims.expiresAt().isBefore(claims.authenticatedAt().plus(maxLifetime))) {
+            issue(response, claims.userId(), claims.email(), claims.provider(), claims.authenticatedAt());
+        }
+    }
+
+    private void issue(HttpServletResponse response, long userId, String email, String provider,
+                       Instant authenticatedAt) {
+        Instant now = clock.instant();
+        Instant slidingExpiry = now.plus(maxAge);
+        Instant absoluteExpiry = authenticatedAt.plus(maxLifetime);
+        Instant expiresAt = slidingExpiry.isBefore(absoluteExpiry) ? slidingExpiry : absoluteExpiry;
+        String token = codec.encode(new Claims(userId, email, provider, authenticatedAt, now, expiresAt));
+        writeCookie(response, cookieName, token, Duration.between(now, expiresAt));
+    }
+
+    public void clear(HttpServletResponse response) {
+        writeCookie(response, cookieName, "", Duration.ZERO);
+    }
+
+    public String cookieName() {
+        return cookieName;
+    }
+
+    SessionTokenCodec codec() {
+        return codec;
+    }
+
+    void writeCookie(HttpServletResponse response, String name, String value, Duration age) {
+        ResponseCookie cookie = ResponseCookie.from(name, value)
+                .httpOnly(true)
+                .secure(secureCookie)
+                .sameSite("Lax")
+                .path("/")
+                .maxAge(age)
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
+    static Optional<String> readCookie(HttpServletRequest request, String name) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return Optional.empty();
+        }
+        for (Cookie cookie : cookies) {
+            if (name.equals(cookie.getName()) && !cookie.getValue().isEmpty()) {
+                return Optional.of(cookie.getValue());
+            }
+        }
+        return Optional.empty();
+    }
+}
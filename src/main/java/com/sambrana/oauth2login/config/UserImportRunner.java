@@ -0,0 +1,65 @@
+package com.sambrana.oauth2login.config;
+
+import com.sambrana.oauth2login.service.UserImportService;
+import com.sambrana.oauth2login.service.UserImportService.ImportReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Runs a bulk user import at startup when {@code app.import.file} is set, e.g.
+ * {@code java -jar app.jar --app.import.file=users.csv --spring.main.web-application-type=none}.
+ * With {@code app.import.exit-when-done} (the default) the process exits afterwards,
+ * non-zero if the import failed; rerunning the same command resumes it.
+ */
+@Component
+@ConditionalOnProperty(name = "app.import.file")
+public class UserImportRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserImportRunner.class);
+
+    private final UserImportService userImportService;
+    private final ConfigurableApplicationContext context;
+    private final Path file;
+    private final boolean exitWhenDone;
+
+    public UserImportRunner(UserImportService userImportService, ConfigurableApplicationContext context,
+                            @Value("${app.import.file}") Path file,
+                            @Value("${app.import.exit-when-done:true}") boolean exitWhenDone) {
+        this.userImportService = userImportService;
+        this.context = context;
+        this.file = file;
+        this.exitWhenDone = exitWhenDone;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int exitCode = 0;
+        try {
+            ImportReport report = userImportService.importFile(file);
+            logger.info("Imported {}: {} records ({} resumed past), {} provider identities linked, {} duplicates, "
+                            + "{} skipped, {} ms, {} records/s",
+                    file, report.records(), report.resumedFrom(), report.identities(), report.duplicates(),
+                    report.skipped(), report.elapsedMillis(), String.format("%.0f", report.recordsPerSecond()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Import of {} interrupted; rerun to resume", file);
+            exitCode = 1;
+        } catch (Exception e) {
+            logger.error("Import of {} failed", file, e);
+            exitCode = 1;
+        }
+        if (exitWhenDone) {
+            int code = exitCode;
+            System.exit(SpringApplication.exit(context, () -> code));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.sambrana.oauth2login.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sambrana.oauth2login.model.LinkedProviderView;
+import com.sambrana.oauth2login.repository.UserExportRepository;
+import com.sambrana.oauth2login.repository.UserExportRepository.ExportedUser;
+import com.sambrana.oauth2login.service.LinkedAccounts;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Admin-only bulk endpoints (access is checked in {@code SecurityConfig}).
+ *
+ * The export streams straight to the response: users are written as they come
+ * off each keyset page and the output is flushed per page, so neither the heap
+ * nor the response buffer grows with the table.
+ */
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
+
+    private final UserExportRepository userExportRepository;
+    private final LinkedAccounts linkedAccounts;
+    private final ObjectMapper objectMapper;
+    private final int exportPageSize;
+    private final int providersMaxIds;
+
+    public AdminController(UserExportRepository userExportRepository, LinkedAccounts linkedAccounts,
+                           ObjectMapper objectMapper,
+                           @Value("${app.admin.export.page-size:1000}") int exportPageSize,
+                           @Value("${app.admin.providers.max-ids:10000}") int providersMaxIds) {
+        this.userExportRepository = userExportRepository;
+        this.linkedAccounts = linkedAccounts;
+        this.objectMapper = objectMapper;
+        this.exportPageSize = exportPageSize;
+        this.providersMaxIds = providersMaxIds;
+    }
+
+    /** Linked provider identities for many users at once; the body is a JSON array of user ids. */
+    @PostMapping("/users/providers")
+    public ResponseEntity<?> linkedProviders(@RequestBody List<Long> userIds) {
+        List<Long> ids = userIds.stream().filter(Objects::nonNull).toList();
+        if (ids.size() > providersMaxIds) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("success", false, "error", "At most " + providersMaxIds + " user ids per request"));
+        }
+        Map<Long, List<LinkedProviderView>> links = linkedAccounts.forUsers(ids);
+        return ResponseEntity.ok(Map.of("users", links));
+    }
+
+    /** All users with their provider links, as NDJSON (default) or CSV. */
+    @GetMapping("/users/export")
+    public void exportUsers(@RequestParam(defaultValue = "ndjson") String format,
+                            HttpServletResponse response) throws IOException {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "format must be ndjson or csv");
+            return;
+        }
+
+        response.setContentType(csv ? "text/csv;charset=UTF-8" : "application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users-" + LocalDate.now()
+                + (csv ? ".csv\"" : ".ndjson\""));
+
+        long start = System.nanoTime();
+        long exported;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8),
+                64 * 1024);
+        if (csv) {
+            // providers: PROVIDER:provider_user_id pairs separated by ';'
+            writer.write("id,email,display_name,avatar_url,created_at,updated_at,providers\n");
+            exported = userExportRepository.forEachUser(exportPageSize,
+                    user -> writeCsv(writer, user), () -> flush(writer));
+        } else {
+            JsonGenerator json = objectMapper.getFactory().createGenerator(writer);
+            json.setRootValueSeparator(new SerializedString("\n"));
+            exported = userExportRepository.forEachUser(exportPageSize,
+                    user -> writeJson(json, user), () -> flush(json));
+            json.writeRaw('\n');
+            json.flush();
+        }
+        writer.flush();
+        logger.info("Exported {} users as {} in {} ms", exported, csv ? "CSV" : "NDJSON",
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void writeJson(JsonGenerator json, ExportedUser user) {
+        try {
+            json.writeObject(user);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeCsv(Writer writer, ExportedUser user) {
+        try {
+            writer.write(Long.toString(user.id()));
+            writer.write(',');
+            writer.write(csvField(user.email()));
+            writer.write(',');
+            writer.write(csvField(user.displayName()));
+            writer.write(',');
+            writer.write(csvField(user.avatarUrl()));
+            writer.write(',');
+            writer.write(user.createdAt() == null ? "" : user.createdAt().toString());
+            writer.write(',');
+            writer.write(user.updatedAt() == null ? "" : user.updatedAt().toString());
+            writer.write(',');
+            writer.write(csvField(user.providers().stream()
+                    .map(link -> link.provider() + ":" + link.providerUserId())
+                    .collect(Collectors.joining(";"))));
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * RFC 4180 quoting; also neutralizes spreadsheet formulas in user-controlled text.
+     * Values already starting with {@code '} get the prefix too, so the import can strip
+     * exactly one leading {@code '} from every value that has one.
+     */
+    private static String csvField(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        if ("=+-@'".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+
+    private static void flush(Flushable flushable) {
+        try {
+            flushable.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
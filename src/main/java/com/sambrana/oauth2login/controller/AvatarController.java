@@ -0,0 +1,126 @@
+package com.sambrana.oauth2login.controller;
+
+import com.sambrana.oauth2login.repository.UserRepository;
+import com.sambrana.oauth2login.service.AvatarCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Serves users' provider avatars from {@link AvatarCache} instead of sending every
+ * browser to Google/GitHub image hosts.
+ *
+ * URLs handed out by {@link #proxiedUrl} carry {@code v}, a fingerprint of the
+ * upstream URL, so a response for the current {@code v} never changes and is
+ * cached as immutable; a changed avatar gets a new URL. Conditional requests are
+ * answered from the ETag (the variant's content hash).
+ */
+@RestController
+@RequestMapping("/api/avatar")
+public class AvatarController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarController.class);
+
+    private final UserRepository userRepository;
+    private final AvatarCache avatarCache;
+
+    public AvatarController(UserRepository userRepository, AvatarCache avatarCache) {
+        this.userRepository = userRepository;
+        this.avatarCache = avatarCache;
+    }
+
+    /** Absolute URL of the proxied avatar for the current request's host, or "" when the user has none. */
+    public static String proxiedUrl(long userId, String upstreamUrl) {
+        if (upstreamUrl == null || upstreamUrl.isBlank()) {
+            return "";
+        }
+        return ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/avatar/{userId}")
+                .queryParam("size", "medium")
+                .queryParam("v", AvatarCache.version(upstreamUrl))
+                .buildAndExpand(userId)
+                .toUriString();
+    }
+
+    @GetMapping("/{userId}")
+    public ResponseEntity<Resource> getAvatar(
+            @PathVariable long userId,
+            @RequestParam(defaultValue = "medium") String size,
+            @RequestParam(name = "v", required = false) String version,
+            @RequestHeader HttpHeaders requestHeaders
+    ) {
+        AvatarCache.Variant variant;
+        try {
+            variant = AvatarCache.Variant.parse(size);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Optional<String> upstreamUrl = userRepository.findAvatarUrlById(userId).filter(url -> !url.isBlank());
+        if (upstreamUrl.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        AvatarCache.OpenEntry opened;
+        try {
+            opened = avatarCache.open(upstreamUrl.get(), variant);
+        } catch (AvatarCache.AvatarUnavailableException e) {
+            logger.warn("Avatar for user {} unavailable: {}", userId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).cacheControl(CacheControl.noStore()).build();
+        }
+
+        // Only the URL we hand out (current v) may be cached forever; anything else revalidates soon
+        CacheControl cacheControl = AvatarCache.version(upstreamUrl.get()).equals(version)
+                ? CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable()
+                : CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic();
+
+        AvatarCache.Entry entry = opened.entry();
+        // Answered here rather than by Spring MVC, which would leave the opened file unclosed
+        if (matches(requestHeaders.getIfNoneMatch(), "\"" + entry.etag() + "\"")) {
+            closeQuietly(opened.content());
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(entry.etag())
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+        // Streamed from the handle opened by the cache, so a concurrent eviction can't turn this into a 500
+        return ResponseEntity.ok()
+                .eTag(entry.etag())
+                .cacheControl(cacheControl)
+                .contentType(MediaType.IMAGE_PNG)
+                .contentLength(entry.size())
+                .body(new InputStreamResource(opened.content()));
+    }
+
+    private static boolean matches(List<String> ifNoneMatch, String etag) {
+        return ifNoneMatch.stream().anyMatch(tag ->
+                tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(etag));
+    }
+
+    private static void closeQuietly(InputStream content) {
+        try {
+            content.close();
+        } catch (IOException e) {
+            logger.debug("Could not close avatar file", e);
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.sambrana.oauth2login.controller;
 public class ProfileUpdateRequest {
     private String displayName;
     private String bio;
+    // The version of the profile the edit was based on (from /api/me); null skips the conflict check
+    private Long version;
 
    
     public String getDisplayName() {
@@ -11,6 +13,9 @@ public class ProfileUpdateRequest {
     public String getBio() {
         return bio;
     }
+    public Long getVersion() {
+        return version;
+    }
 
 
     public void setDisplayName(String displayName) {
@@ -19,4 +24,7 @@ public class ProfileUpdateRequest {
     public void setBio(String bio) {
         this.bio = bio;
     }
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
\ No newline at end of file
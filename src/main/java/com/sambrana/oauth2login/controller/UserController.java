@@ -1,18 +1,30 @@
 package com.sambrana.oauth2login.controller;
 
-import com.sambrana.oauth2login.model.User;
+import com.sambrana.oauth2login.model.LinkedProviderView;
+import com.sambrana.oauth2login.model.ProfileVersion;
+import com.sambrana.oauth2login.model.ProfileView;
 import com.sambrana.oauth2login.repository.UserRepository;
+import com.sambrana.oauth2login.service.AppUserPrincipal;
+import com.sambrana.oauth2login.service.LinkedAccounts;
+import com.sambrana.oauth2login.service.PrimaryPins;
+import com.sambrana.oauth2login.service.ProfileCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 @RestController
@@ -20,17 +32,29 @@ import java.util.Optional;
 public class UserController {
 
     private static final Logger logger = LoggerFactory.getLogger(UserController.class);
+
+    // The browser keeps /api/me but revalidates it on every use, so repeat loads are a 304
+    private static final CacheControl PROFILE_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
     private final UserRepository userRepository;
+    private final ProfileCache profileCache;
+    private final PrimaryPins primaryPins;
+    private final LinkedAccounts linkedAccounts;
 
-    public UserController(UserRepository userRepository) {
+    public UserController(UserRepository userRepository, ProfileCache profileCache, PrimaryPins primaryPins,
+                          LinkedAccounts linkedAccounts) {
         this.userRepository = userRepository;
+        this.profileCache = profileCache;
+        this.primaryPins = primaryPins;
+        this.linkedAccounts = linkedAccounts;
     }
 
-    // ✅ Get logged-in user info
+    // ✅ Get logged-in user info (served by the read replica when one is configured)
     @GetMapping("/me")
+    @Transactional(readOnly = true)
     public ResponseEntity<?> getAuthenticatedUser(
             Authentication authentication,
-            @AuthenticationPrincipal OAuth2User principal
+            @AuthenticationPrincipal OAuth2User principal,
+            @RequestHeader HttpHeaders requestHeaders
     ) {
         if (principal == null) {
             return ResponseEntity.ok(Map.of("authenticated", false));
@@ -41,67 +65,162 @@ public class UserController {
             return ResponseEntity.ok(Map.of("authenticated", false, "error", "Missing email from OAuth2 provider"));
         }
 
-        Optional<User> userOpt = userRepository.findByEmail(email);
-
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            Map<String, Object> userDetails = Map.of(
-                    "authenticated", true,
-                    "email", user.getEmail(),
-                    "displayName", user.getDisplayName(),
-                    "bio", user.getBio() == null ? "" : user.getBio(),
-                    "avatarUrl", user.getAvatarUrl()
-            );
-            return ResponseEntity.ok(userDetails);
-        } else {
-            // First-time login (user record not yet in DB)
-            String providerId = "";
-            if (authentication instanceof OAuth2AuthenticationToken oauthToken) {
-                providerId = oauthToken.getAuthorizedClientRegistrationId();
+        // Revalidation: answer from the cached view or a validators-only query, without building the body
+        if (!requestHeaders.getIfNoneMatch().isEmpty() || requestHeaders.getIfModifiedSince() >= 0) {
+            Optional<ProfileVersion> version = profileCache.peek(email).map(ProfileVersion::of)
+                    .or(() -> userRepository.findProfileVersionByEmail(email));
+            if (version.isPresent() && version.get().updatedAt() != null
+                    && isNotModified(requestHeaders, version.get())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(version.get().etag())
+                        .lastModified(version.get().lastModified())
+                        .cacheControl(PROFILE_CACHE_CONTROL)
+                        .build();
             }
+        }
 
-            String avatarUrl = providerId.equalsIgnoreCase("github")
-                    ? principal.getAttribute("avatar_url")
-                    : principal.getAttribute("picture");
+        Optional<ProfileView> profileOpt = profileCache.get(email, userRepository::findProfileViewByEmail);
 
+        if (profileOpt.isPresent()) {
+            ProfileView profile = profileOpt.get();
+            Map<String, Object> userDetails = profileDetails(profile);
+            if (profile.updatedAt() == null) {
+                return ResponseEntity.ok(userDetails);
+            }
+            ProfileVersion version = ProfileVersion.of(profile);
+            return ResponseEntity.ok()
+                    .eTag(version.etag())
+                    .lastModified(version.lastModified())
+                    .cacheControl(PROFILE_CACHE_CONTROL)
+                    .body(userDetails);
+        } else {
+            // First-time login (user record not yet in DB). The session principal is slim,
+            // so only what it carries can be shown until provisioning catches up.
             return ResponseEntity.ok(Map.of(
                     "authenticated", true,
                     "email", email,
-                    "displayName", principal.getAttribute("name"),
-                    "avatarUrl", avatarUrl,
+                    "displayName", Objects.requireNonNullElse(principal.getAttribute("name"), email),
+                    "avatarUrl", "",
                     "bio", ""
             ));
         }
     }
 
-    // ✅ Update profile (requires CSRF + authentication)
+    // ✅ Provider identities (Google, GitHub) linked to the logged-in user
+    @GetMapping("/me/providers")
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> getLinkedProviders(@AuthenticationPrincipal OAuth2User principal) {
+        if (principal == null) {
+            return ResponseEntity.status(401)
+                    .body(Map.of("success", false, "error", "Not authenticated"));
+        }
+
+        Optional<Long> userId = principal instanceof AppUserPrincipal appUser
+                ? Optional.of(appUser.getUserId())
+                : userRepository.findProfileVersionByEmail(principal.getAttribute("email")).map(ProfileVersion::id);
+        if (userId.isEmpty()) {
+            return ResponseEntity.status(404)
+                    .body(Map.of("success", false, "error", "User not found"));
+        }
+
+        List<Map<String, String>> providers = linkedAccounts.forUser(userId.get()).stream()
+                .map(UserController::providerDetails)
+                .toList();
+        return ResponseEntity.ok(Map.of("providers", providers));
+    }
+
+    private static Map<String, String> providerDetails(LinkedProviderView link) {
+        return Map.of(
+                "provider", link.provider(),
+                "providerUserId", link.providerUserId(),
+                "email", link.providerEmail() == null ? "" : link.providerEmail()
+        );
+    }
+
+    private static Map<String, Object> profileDetails(ProfileView profile) {
+        return Map.of(
+                "authenticated", true,
+                "email", profile.email(),
+                "displayName", profile.displayName(),
+                "bio", profile.bio() == null ? "" : profile.bio(),
+                "avatarUrl", AvatarController.proxiedUrl(profile.id(), profile.avatarUrl()),
+                "version", profile.version() == null ? 0 : profile.version()
+        );
+    }
+
+    /** If-None-Match takes precedence over If-Modified-Since (RFC 9110 13.2.2). */
+    private static boolean isNotModified(HttpHeaders requestHeaders, ProfileVersion version) {
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            String etag = version.etag();
+            return ifNoneMatch.stream().anyMatch(tag ->
+                    tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(etag));
+        }
+        // HTTP dates have second precision
+        return version.lastModified() / 1000 * 1000 <= requestHeaders.getIfModifiedSince();
+    }
+
+    // ✅ Update profile (requires CSRF + authentication): both fields are replaced
     @PostMapping("/profile")
     @Transactional
     public ResponseEntity<?> updateProfile(
             @RequestBody ProfileUpdateRequest request,
             @AuthenticationPrincipal OAuth2User principal
     ) {
+        return writeProfile(request, principal, false);
+    }
+
+    // ✅ Partial update: only the fields present in the body change
+    @PatchMapping("/profile")
+    @Transactional
+    public ResponseEntity<?> patchProfile(
+            @RequestBody ProfileUpdateRequest request,
+            @AuthenticationPrincipal OAuth2User principal
+    ) {
+        return writeProfile(request, principal, true);
+    }
+
+    /**
+     * One conditional UPDATE, no prior read. If the request's version is stale,
+     * answers 409 with the current profile so the client can merge and retry.
+     */
+    private ResponseEntity<?> writeProfile(ProfileUpdateRequest request, OAuth2User principal, boolean partial) {
         if (principal == null) {
             return ResponseEntity.status(401)
                     .body(Map.of("success", false, "error", "Not authenticated"));
         }
 
         String email = principal.getAttribute("email");
-        Optional<User> userOpt = userRepository.findByEmail(email);
-
-        if (userOpt.isEmpty()) {
-            return ResponseEntity.status(404)
-                    .body(Map.of("success", false, "error", "User not found"));
+        LocalDateTime now = LocalDateTime.now();
+        int updated = partial
+                ? userRepository.patchProfile(email, request.getDisplayName(), request.getBio(),
+                        request.getVersion(), now)
+                : userRepository.updateProfile(email, request.getDisplayName(), request.getBio(),
+                        request.getVersion(), now);
+
+        if (updated == 0) {
+            Optional<ProfileView> current = userRepository.findProfileViewByEmail(email);
+            if (current.isEmpty()) {
+                return ResponseEntity.status(404)
+                        .body(Map.of("success", false, "error", "User not found"));
+            }
+            logger.debug("Rejected stale profile update for {} (version {}, current {})",
+                    email, request.getVersion(), current.get().version());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("success", false, "error", "Profile was changed elsewhere",
+                            "current", profileDetails(current.get())));
         }
 
-        User user = userOpt.get();
-
-        user.setDisplayName(request.getDisplayName());
-        user.setBio(request.getBio());
-
-        userRepository.save(user);
+        profileCache.evictAfterCommit(email);
+        primaryPins.pin(email);
         logger.info("✅ Profile updated successfully for {}", email);
 
-        return ResponseEntity.ok(Map.of("success", true, "message", "Profile updated successfully"));
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("success", true);
+        body.put("message", "Profile updated successfully");
+        if (request.getVersion() != null) {
+            body.put("version", request.getVersion() + 1);
+        }
+        return ResponseEntity.ok(body);
     }
 }
@@ -3,12 +3,17 @@ package com.sambrana.oauth2login.model;
 import jakarta.persistence.*;
 
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(
+        name = "uk_auth_provider_identity", columnNames = {"provider", "provider_user_id"}),
+        // Linked-account lookups by user; not left to the FK constraint, which may be absent (e.g. ddl-auto none)
+        indexes = @Index(name = "idx_auth_provider_user_id", columnList = "user_id"))
 public class AuthProvider {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
+    // Lazy: loading a link must not drag its user along
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id") // ✅ still fine
     private User user;
 
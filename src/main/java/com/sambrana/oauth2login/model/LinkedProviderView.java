@@ -0,0 +1,13 @@
+package com.sambrana.oauth2login.model;
+
+/**
+ * One provider identity linked to a user, as listed by /api/me/providers and the
+ * admin bulk lookup.
+ */
+public record LinkedProviderView(
+        Long userId,
+        String provider,
+        String providerUserId,
+        String providerEmail
+) {
+}
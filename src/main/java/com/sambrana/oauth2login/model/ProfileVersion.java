@@ -0,0 +1,28 @@
+package com.sambrana.oauth2login.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * The validators of a user's /api/me representation. The ETag is built from the
+ * {@code @Version} counter, which every profile write increments, so it changes
+ * with each write even when two land in the same clock tick; {@code updatedAt} only
+ * feeds Last-Modified. Loadable with a narrow query, so a revalidation never has to
+ * read the profile itself.
+ */
+public record ProfileVersion(Long id, Long version, LocalDateTime updatedAt) {
+
+    public static ProfileVersion of(ProfileView view) {
+        return new ProfileVersion(view.id(), view.version(), view.updatedAt());
+    }
+
+    /** Strong, quoted entity tag. */
+    public String etag() {
+        return "\"" + id + "-" + (version == null ? 0 : version) + "\"";
+    }
+
+    /** {@code updatedAt} in epoch milliseconds (timestamps are written in the JVM's zone). */
+    public long lastModified() {
+        return updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,30 @@
+package com.sambrana.oauth2login.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Immutable snapshot of the profile fields served by /api/me.
+ * Safe to share between threads and to keep in the profile cache.
+ */
+public record ProfileView(
+        Long id,
+        String email,
+        String displayName,
+        String avatarUrl,
+        String bio,
+        LocalDateTime updatedAt,
+        Long version
+) {
+
+    public static ProfileView of(User user) {
+        return new ProfileView(
+                user.getId(),
+                user.getEmail(),
+                user.getDisplayName(),
+                user.getAvatarUrl(),
+                user.getBio(),
+                user.getUpdatedAt(),
+                user.getVersion()
+        );
+    }
+}
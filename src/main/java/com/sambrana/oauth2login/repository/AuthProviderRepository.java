@@ -1,12 +1,22 @@
 package com.sambrana.oauth2login.repository;
 
 import com.sambrana.oauth2login.model.AuthProvider;
+import com.sambrana.oauth2login.model.LinkedProviderView;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import java.util.Optional;
+
+import java.util.Collection;
+import java.util.List;
 
 @Repository
 public interface AuthProviderRepository extends JpaRepository<AuthProvider, Long> {
-    
-    Optional<AuthProvider> findByProviderAndProviderUserId(String provider, String providerUserId);
-}
\ No newline at end of file
+
+    // Login resolution reads ProvisioningRepository.findByProviderIdentity (one JDBC join into a record)
+
+    // ap.user.id is the foreign key column itself: no join to users, served by idx_auth_provider_user_id
+    @Query("select new com.sambrana.oauth2login.model.LinkedProviderView(ap.user.id, ap.provider, ap.providerUserId,"
+            + " ap.providerEmail) from AuthProvider ap where ap.user.id in :userIds order by ap.user.id, ap.provider")
+    List<LinkedProviderView> findLinkedProviders(@Param("userIds") Collection<Long> userIds);
+}
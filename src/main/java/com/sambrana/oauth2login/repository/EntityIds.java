@@ -0,0 +1,102 @@
+package com.sambrana.oauth2login.repository;
+
+import com.sambrana.oauth2login.model.AuthProvider;
+import com.sambrana.oauth2login.model.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.Generator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ids for the JDBC insert paths, taken from the same generator Hibernate uses for
+ * the entity, so both kinds of insert can coexist.
+ *
+ * With the default mapping ({@code IDENTITY}) there is nothing to hand out and the
+ * JDBC statements let MySQL assign the key. With the pooled-ids profile
+ * ({@code META-INF/pooled-ids-orm.xml}) ids come in blocks from the
+ * {@code id_blocks} table; every insert, JPA or JDBC, must then carry an id from
+ * that allocator, or AUTO_INCREMENT would hand out ids inside a reserved block.
+ */
+@Component
+public class EntityIds {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntityIds.class);
+
+    // pooled-lo: next_val is the low end of the next free block; the block name is the table name
+    private static final String SEED_BLOCK = """
+            INSERT INTO id_blocks (name, next_val)
+            SELECT ?, COALESCE(MAX(id), 0) + 1 FROM %s
+            ON DUPLICATE KEY UPDATE next_val = GREATEST(next_val, VALUES(next_val))
+            """;
+
+    private final SessionFactoryImplementor sessionFactory;
+    private final BeforeExecutionGenerator userIds;
+    private final BeforeExecutionGenerator authProviderIds;
+
+    public EntityIds(EntityManagerFactory entityManagerFactory, JdbcTemplate jdbcTemplate) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.userIds = preInsertGenerator(User.class);
+        this.authProviderIds = preInsertGenerator(AuthProvider.class);
+        if (userIds != null) {
+            seed(jdbcTemplate, "users");
+        }
+        if (authProviderIds != null) {
+            seed(jdbcTemplate, "auth_provider");
+        }
+    }
+
+    /** True when {@code users} rows need an id from {@link #nextUserIds}. */
+    public boolean assignsUserIds() {
+        return userIds != null;
+    }
+
+    /** True when {@code auth_provider} rows need an id from {@link #nextAuthProviderIds}. */
+    public boolean assignsAuthProviderIds() {
+        return authProviderIds != null;
+    }
+
+    public long[] nextUserIds(int count) {
+        return next(userIds, User.class, count);
+    }
+
+    public long[] nextAuthProviderIds(int count) {
+        return next(authProviderIds, AuthProvider.class, count);
+    }
+
+    private long[] next(BeforeExecutionGenerator generator, Class<?> entity, int count) {
+        if (generator == null) {
+            throw new IllegalStateException(entity.getSimpleName() + " ids are assigned by the database");
+        }
+        long[] ids = new long[count];
+        // The generator hits id_blocks (in its own transaction) only when a block runs out
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            SharedSessionContractImplementor implementor = (SharedSessionContractImplementor) session;
+            for (int i = 0; i < count; i++) {
+                ids[i] = ((Number) generator.generate(implementor, null, null, EventType.INSERT)).longValue();
+            }
+        }
+        return ids;
+    }
+
+    private BeforeExecutionGenerator preInsertGenerator(Class<?> entity) {
+        Generator generator = sessionFactory.getMappingMetamodel().getEntityDescriptor(entity).getGenerator();
+        return generator instanceof BeforeExecutionGenerator beforeExecution && !generator.generatedOnExecution()
+                ? beforeExecution : null;
+    }
+
+    /**
+     * Moves the block counter past the table's current maximum id, so switching an
+     * existing database from IDENTITY doesn't hand out ids that are already taken.
+     */
+    private static void seed(JdbcTemplate jdbcTemplate, String table) {
+        jdbcTemplate.update(SEED_BLOCK.formatted(table), table);
+        logger.info("Allocating {} ids in blocks from id_blocks", table);
+    }
+}
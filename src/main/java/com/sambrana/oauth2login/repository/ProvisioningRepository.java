@@ -0,0 +1,188 @@
+package com.sambrana.oauth2login.repository;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Login provisioning over plain JDBC.
+ *
+ * Resolves or creates the {@code users} + {@code auth_provider} pair with MySQL
+ * {@code INSERT ... ON DUPLICATE KEY UPDATE} against the unique keys on
+ * {@code users.email} and {@code (provider, provider_user_id)}, so concurrent
+ * first logins converge on one row instead of racing into duplicates, and no
+ * statement needs a persistence-context flush.
+ */
+@Repository
+public class ProvisioningRepository {
+
+    /** The user a provider identity resolved to. */
+    public record LinkedUser(long userId, String email, String displayName, String avatarUrl) {
+    }
+
+    /**
+     * Result of {@link #upsertUserAndLink}. {@code userCreated} is false when the identity was
+     * linked to an existing user with the same email; {@code linked} is false when a
+     * concurrent login linked it first.
+     */
+    public record LinkResult(LinkedUser user, boolean userCreated, boolean linked) {
+    }
+
+    /** A provider name/avatar refresh for one user, as queued by the write-behind path. */
+    public record ProfileRefresh(long userId, String email, String displayName, String avatarUrl) {
+    }
+
+    private static final String FIND_BY_PROVIDER_IDENTITY = """
+            SELECT u.id, u.email, u.display_name, u.avatar_url
+              FROM auth_provider ap
+              JOIN users u ON u.id = ap.user_id
+             WHERE ap.provider = ? AND ap.provider_user_id = ?
+            """;
+
+    // LAST_INSERT_ID(id) makes the generated key report the existing row's id on a duplicate email
+    private static final String UPSERT_USER = """
+            INSERT INTO users (email, display_name, avatar_url, created_at, updated_at)
+            VALUES (?, COALESCE(?, 'Unknown'), ?, ?, ?)
+            ON DUPLICATE KEY UPDATE
+                id = LAST_INSERT_ID(id),
+                display_name = COALESCE(?, display_name),
+                avatar_url = COALESCE(?, avatar_url),
+                updated_at = ?,
+                version = version + 1
+            """;
+
+    // Pooled-ids variant: the id comes from EntityIds. On a duplicate email it is discarded.
+    private static final String UPSERT_USER_WITH_ID = """
+            INSERT INTO users (email, display_name, avatar_url, created_at, updated_at, id)
+            VALUES (?, COALESCE(?, 'Unknown'), ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE
+                id = LAST_INSERT_ID(id),
+                display_name = COALESCE(?, display_name),
+                avatar_url = COALESCE(?, avatar_url),
+                updated_at = ?,
+                version = version + 1
+            """;
+
+    // A concurrent login that already linked this identity wins; we re-read its row below
+    private static final String INSERT_LINK = """
+            INSERT IGNORE INTO auth_provider (user_id, provider, provider_user_id, provider_email)
+            VALUES (?, ?, ?, ?)
+            """;
+
+    private static final String INSERT_LINK_WITH_ID = """
+            INSERT IGNORE INTO auth_provider (user_id, provider, provider_user_id, provider_email, id)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+
+    private static final String REFRESH_PROFILE = """
+            UPDATE users
+               SET display_name = COALESCE(?, display_name),
+                   avatar_url = COALESCE(?, avatar_url),
+                   updated_at = ?,
+                   version = version + 1
+             WHERE id = ?
+            """;
+
+    private static final RowMapper<LinkedUser> LINKED_USER_MAPPER = (rs, rowNum) -> new LinkedUser(
+            rs.getLong("id"),
+            rs.getString("email"),
+            rs.getString("display_name"),
+            rs.getString("avatar_url")
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityIds entityIds;
+
+    public ProvisioningRepository(JdbcTemplate jdbcTemplate, EntityIds entityIds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityIds = entityIds;
+    }
+
+    /** One indexed round trip: provider link joined to its user. */
+    public Optional<LinkedUser> findByProviderIdentity(String provider, String providerUserId) {
+        return jdbcTemplate.query(FIND_BY_PROVIDER_IDENTITY, LINKED_USER_MAPPER, provider, providerUserId)
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Creates (or merges into the existing user with the same email) and links the
+     * provider identity. Two statements, no reads, no flushes.
+     */
+    public LinkResult upsertUserAndLink(String provider, String providerUserId,
+                                        String email, String displayName, String avatarUrl) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Long assignedId = entityIds.assignsUserIds() ? entityIds.nextUserIds(1)[0] : null;
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        // MySQL reports 1 affected row for an insert and 2 for the duplicate-key update
+        int upserted = jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    assignedId == null ? UPSERT_USER : UPSERT_USER_WITH_ID, new String[]{"id"});
+            int index = 1;
+            ps.setString(index++, email);
+            ps.setString(index++, displayName);
+            ps.setString(index++, avatarUrl);
+            ps.setTimestamp(index++, now);
+            ps.setTimestamp(index++, now);
+            if (assignedId != null) {
+                ps.setLong(index++, assignedId);
+            }
+            ps.setString(index++, displayName);
+            ps.setString(index++, avatarUrl);
+            ps.setTimestamp(index, now);
+            return ps;
+        }, keyHolder);
+        // An explicit id isn't reported as a generated key; only the duplicate path's LAST_INSERT_ID(id) is
+        long userId = assignedId != null && upserted == 1 ? assignedId : keyHolder.getKey().longValue();
+
+        int linked = entityIds.assignsAuthProviderIds()
+                ? jdbcTemplate.update(INSERT_LINK_WITH_ID, userId, provider, providerUserId, email,
+                        entityIds.nextAuthProviderIds(1)[0])
+                : jdbcTemplate.update(INSERT_LINK, userId, provider, providerUserId, email);
+        if (linked == 0) {
+            // Lost the race to another first login for the same identity
+            LinkedUser existing = findByProviderIdentity(provider, providerUserId)
+                    .orElseThrow(() -> new IllegalStateException(
+                            "Provider link for " + provider + " vanished after duplicate insert"));
+            return new LinkResult(existing, false, false);
+        }
+        LinkedUser user = new LinkedUser(userId, email, displayName != null ? displayName : "Unknown", avatarUrl);
+        return new LinkResult(user, upserted == 1, true);
+    }
+
+    /** Applies provider-supplied name/avatar to an existing user, keeping stored values for nulls. */
+    public void refreshProfile(long userId, String displayName, String avatarUrl) {
+        jdbcTemplate.update(REFRESH_PROFILE, displayName, avatarUrl, Timestamp.valueOf(LocalDateTime.now()), userId);
+    }
+
+    /** Applies many refreshes in one JDBC batch. */
+    public void refreshProfiles(List<ProfileRefresh> refreshes) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(REFRESH_PROFILE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ProfileRefresh refresh = refreshes.get(i);
+                ps.setString(1, refresh.displayName());
+                ps.setString(2, refresh.avatarUrl());
+                ps.setTimestamp(3, now);
+                ps.setLong(4, refresh.userId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return refreshes.size();
+            }
+        });
+    }
+}
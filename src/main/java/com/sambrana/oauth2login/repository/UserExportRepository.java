@@ -0,0 +1,120 @@
+package com.sambrana.oauth2login.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Bulk read of users with their provider links, for exports.
+ *
+ * Walks {@code users} in keyset pages on the primary key ({@code id > lastId ORDER BY
+ * id LIMIT n}), each page joined to its {@code auth_provider} rows. Rows are handed
+ * to the sink as they are read and nothing is kept across pages, so memory does not
+ * grow with the table and no entity ever enters a persistence context.
+ */
+@Repository
+public class UserExportRepository {
+
+    public record ProviderLink(String provider, String providerUserId) {
+    }
+
+    public record ExportedUser(long id, String email, String displayName, String avatarUrl,
+                               LocalDateTime createdAt, LocalDateTime updatedAt, List<ProviderLink> providers) {
+    }
+
+    private static final String PAGE = """
+            SELECT u.id, u.email, u.display_name, u.avatar_url, u.created_at, u.updated_at,
+                   ap.provider, ap.provider_user_id
+              FROM (SELECT id, email, display_name, avatar_url, created_at, updated_at
+                      FROM users
+                     WHERE id > ?
+                     ORDER BY id
+                     LIMIT ?) u
+              LEFT JOIN auth_provider ap ON ap.user_id = u.id
+             ORDER BY u.id, ap.id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserExportRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Streams every user, in id order, to {@code sink}; {@code afterPage} runs after
+     * each page (e.g. to flush the output).
+     *
+     * @return the number of users exported
+     */
+    public long forEachUser(int pageSize, Consumer<ExportedUser> sink, Runnable afterPage) {
+        long lastId = 0;
+        long total = 0;
+        while (true) {
+            PageReader page = new PageReader(sink);
+            jdbcTemplate.query(PAGE, page, lastId, pageSize);
+            page.finish();
+            if (page.users == 0) {
+                return total;
+            }
+            total += page.users;
+            lastId = page.lastId;
+            afterPage.run();
+            if (page.users < pageSize) {
+                return total;
+            }
+        }
+    }
+
+    /** Folds the joined rows (one per provider link) back into one user each. */
+    private static final class PageReader implements RowCallbackHandler {
+
+        private final Consumer<ExportedUser> sink;
+        private ExportedUser current;
+        private int users;
+        private long lastId;
+
+        PageReader(Consumer<ExportedUser> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long id = rs.getLong("id");
+            if (current == null || current.id() != id) {
+                finish();
+                current = new ExportedUser(id,
+                        rs.getString("email"),
+                        rs.getString("display_name"),
+                        rs.getString("avatar_url"),
+                        toLocalDateTime(rs.getTimestamp("created_at")),
+                        toLocalDateTime(rs.getTimestamp("updated_at")),
+                        new ArrayList<>(2));
+                users++;
+                lastId = id;
+            }
+            String provider = rs.getString("provider");
+            if (provider != null) {
+                current.providers().add(new ProviderLink(provider, rs.getString("provider_user_id")));
+            }
+        }
+
+        void finish() {
+            if (current != null) {
+                sink.accept(current);
+                current = null;
+            }
+        }
+
+        private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+            return timestamp == null ? null : timestamp.toLocalDateTime();
+        }
+    }
+}
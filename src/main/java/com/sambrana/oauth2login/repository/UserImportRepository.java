@@ -0,0 +1,178 @@
+package com.sambrana.oauth2login.repository;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JDBC batch writes for the bulk user import.
+ *
+ * Hibernate can't batch inserts of {@code IDENTITY}-keyed entities (it needs each
+ * generated id back immediately), so the import skips the persistence context:
+ * users go in as one JDBC batch (rewritten into multi-row INSERTs by
+ * {@code rewriteBatchedStatements=true}), their ids come back with one
+ * {@code IN} query per chunk, and the links follow as a second batch. Both
+ * inserts turn a unique-key clash into the no-op {@code ON DUPLICATE KEY UPDATE
+ * id = id}, so existing rows and re-imported chunks are left untouched while every
+ * other error (a value too long, a missing NOT NULL column) still fails the chunk;
+ * {@code INSERT IGNORE} would downgrade those to warnings and write mangled rows.
+ *
+ * With pooled ids ({@link EntityIds}) each row carries an id from the block
+ * allocator instead; ids of ignored rows are simply never used.
+ */
+@Repository
+public class UserImportRepository {
+
+    public record ImportedIdentity(String email, String displayName, String avatarUrl,
+                                   String provider, String providerUserId) {
+    }
+
+    private static final String INSERT_USER = """
+            INSERT INTO users (email, display_name, avatar_url, created_at, updated_at)
+            VALUES (?, COALESCE(?, 'Unknown'), ?, ?, ?)
+            ON DUPLICATE KEY UPDATE id = id
+            """;
+
+    private static final String INSERT_USER_WITH_ID = """
+            INSERT INTO users (email, display_name, avatar_url, created_at, updated_at, id)
+            VALUES (?, COALESCE(?, 'Unknown'), ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE id = id
+            """;
+
+    private static final String INSERT_LINK = """
+            INSERT INTO auth_provider (user_id, provider, provider_user_id, provider_email)
+            VALUES (?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE id = id
+            """;
+
+    private static final String INSERT_LINK_WITH_ID = """
+            INSERT INTO auth_provider (user_id, provider, provider_user_id, provider_email, id)
+            VALUES (?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE id = id
+            """;
+
+    private static final int IN_CLAUSE_LIMIT = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityIds entityIds;
+
+    public UserImportRepository(JdbcTemplate jdbcTemplate, EntityIds entityIds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityIds = entityIds;
+    }
+
+    /** One batch; {@code users} must be unique by email. */
+    public void insertUsers(List<ImportedIdentity> users) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        long[] ids = entityIds.assignsUserIds() ? entityIds.nextUserIds(users.size()) : null;
+        jdbcTemplate.batchUpdate(ids == null ? INSERT_USER : INSERT_USER_WITH_ID, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ImportedIdentity user = users.get(i);
+                ps.setString(1, user.email());
+                ps.setString(2, user.displayName());
+                ps.setString(3, user.avatarUrl());
+                ps.setTimestamp(4, now);
+                ps.setTimestamp(5, now);
+                if (ids != null) {
+                    ps.setLong(6, ids[i]);
+                }
+            }
+
+            @Override
+            public int getBatchSize() {
+                return users.size();
+            }
+        });
+    }
+
+    /**
+     * Ids of the given emails, queried {@value #IN_CLAUSE_LIMIT} at a time. Keys are
+     * lower-cased, matching the case-insensitive unique key on {@code users.email}.
+     */
+    public Map<String, Long> findIdsByEmail(List<String> emails) {
+        Map<String, Long> ids = new HashMap<>(emails.size() * 2);
+        for (int from = 0; from < emails.size(); from += IN_CLAUSE_LIMIT) {
+            List<String> slice = emails.subList(from, Math.min(from + IN_CLAUSE_LIMIT, emails.size()));
+            String sql = "SELECT id, email FROM users WHERE email IN ("
+                    + String.join(",", Collections.nCopies(slice.size(), "?")) + ")";
+            jdbcTemplate.query(sql, rs -> {
+                ids.put(rs.getString("email").toLowerCase(Locale.ROOT), rs.getLong("id"));
+            }, slice.toArray());
+        }
+        return ids;
+    }
+
+    /**
+     * One batch of the identities not linked yet; identities whose email has no id in
+     * {@code userIds} are skipped.
+     *
+     * @return the number of links inserted. The batch's update counts can't say: with
+     * {@code rewriteBatchedStatements} Connector/J answers {@code SUCCESS_NO_INFO} for
+     * every row of a multi-row INSERT, and it counts found rows, so a duplicate reads as
+     * 1 either way. The identities already present are read first instead (one
+     * {@code IN} query per {@value #IN_CLAUSE_LIMIT}) and left out of the batch; one
+     * linked by a concurrent chunk in the meantime is still absorbed by the unique key.
+     */
+    public int insertLinks(List<ImportedIdentity> identities, Map<String, Long> userIds) {
+        Set<String> existing = findExistingIdentities(identities);
+        List<ImportedIdentity> linkable = identities.stream()
+                .filter(identity -> userIds.containsKey(identity.email().toLowerCase(Locale.ROOT)))
+                .filter(identity -> !existing.contains(identityKey(identity.provider(), identity.providerUserId())))
+                .toList();
+        if (linkable.isEmpty()) {
+            return 0;
+        }
+        long[] ids = entityIds.assignsAuthProviderIds() ? entityIds.nextAuthProviderIds(linkable.size()) : null;
+        jdbcTemplate.batchUpdate(ids == null ? INSERT_LINK : INSERT_LINK_WITH_ID, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ImportedIdentity identity = linkable.get(i);
+                ps.setLong(1, userIds.get(identity.email().toLowerCase(Locale.ROOT)));
+                ps.setString(2, identity.provider());
+                ps.setString(3, identity.providerUserId());
+                ps.setString(4, identity.email());
+                if (ids != null) {
+                    ps.setLong(5, ids[i]);
+                }
+            }
+
+            @Override
+            public int getBatchSize() {
+                return linkable.size();
+            }
+        });
+        return linkable.size();
+    }
+
+    /** {@code PROVIDER:provider_user_id} keys of the given identities that are already linked. */
+    private Set<String> findExistingIdentities(List<ImportedIdentity> identities) {
+        List<String> userIds = identities.stream().map(ImportedIdentity::providerUserId).distinct().toList();
+        Set<String> existing = new HashSet<>();
+        for (int from = 0; from < userIds.size(); from += IN_CLAUSE_LIMIT) {
+            List<String> slice = userIds.subList(from, Math.min(from + IN_CLAUSE_LIMIT, userIds.size()));
+            String sql = "SELECT provider, provider_user_id FROM auth_provider WHERE provider_user_id IN ("
+                    + String.join(",", Collections.nCopies(slice.size(), "?")) + ")";
+            jdbcTemplate.query(sql, rs -> {
+                existing.add(identityKey(rs.getString("provider"), rs.getString("provider_user_id")));
+            }, slice.toArray());
+        }
+        return existing;
+    }
+
+    private static String identityKey(String provider, String providerUserId) {
+        return provider + ":" + providerUserId;
+    }
+}
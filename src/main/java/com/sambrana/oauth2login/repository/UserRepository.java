@@ -1,9 +1,15 @@
 package com.sambrana.oauth2login.repository;
 
+import com.sambrana.oauth2login.model.ProfileVersion;
+import com.sambrana.oauth2login.model.ProfileView;
 import com.sambrana.oauth2login.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +17,37 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByEmail(String email);
 
+    // Read path of /api/me: the record straight from the query, no managed entity to snapshot or dirty-check
+    @Query("select new com.sambrana.oauth2login.model.ProfileView(u.id, u.email, u.displayName, u.avatarUrl, u.bio,"
+            + " u.updatedAt, u.version) from User u where u.email = :email")
+    Optional<ProfileView> findProfileViewByEmail(@Param("email") String email);
+
+    /**
+     * Full update of the editable fields in one statement, without loading the row.
+     * With a {@code version}, only applies if the row is still at that version.
+     *
+     * @return 1 if applied, 0 if the user doesn't exist or the version is stale
+     */
+    @Modifying
+    @Query("update User u set u.displayName = :displayName, u.bio = :bio, u.updatedAt = :now, u.version = u.version + 1"
+            + " where u.email = :email and (:version is null or u.version = :version)")
+    int updateProfile(@Param("email") String email, @Param("displayName") String displayName,
+                      @Param("bio") String bio, @Param("version") Long version, @Param("now") LocalDateTime now);
+
+    /** As {@link #updateProfile}, but a null field keeps its stored value (PATCH). */
+    @Modifying
+    @Query("update User u set u.displayName = coalesce(:displayName, u.displayName), u.bio = coalesce(:bio, u.bio),"
+            + " u.updatedAt = :now, u.version = u.version + 1"
+            + " where u.email = :email and (:version is null or u.version = :version)")
+    int patchProfile(@Param("email") String email, @Param("displayName") String displayName,
+                     @Param("bio") String bio, @Param("version") Long version, @Param("now") LocalDateTime now);
+
+    // Validators only, for conditional GETs of /api/me
+    @Query("select new com.sambrana.oauth2login.model.ProfileVersion(u.id, u.version, u.updatedAt)"
+            + " from User u where u.email = :email")
+    Optional<ProfileVersion> findProfileVersionByEmail(@Param("email") String email);
+
+    @Query("select u.avatarUrl from User u where u.id = :id")
+    Optional<String> findAvatarUrlById(@Param("id") Long id);
+
 }
@@ -0,0 +1,36 @@
+package com.sambrana.oauth2login.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Who may use the {@code /api/admin} endpoints: users whose login email is listed
+ * in {@code app.admin.emails}. Nobody, when the list is empty.
+ */
+@Component
+public class AdminAccess {
+
+    private final Set<String> adminEmails;
+
+    public AdminAccess(@Value("${app.admin.emails:}") Set<String> adminEmails) {
+        this.adminEmails = adminEmails.stream()
+                .map(String::trim)
+                .filter(email -> !email.isEmpty())
+                .map(email -> email.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    public boolean isAdmin(Authentication authentication) {
+        if (authentication == null || !(authentication.getPrincipal() instanceof OAuth2User user)) {
+            return false;
+        }
+        String email = user.getAttribute("email");
+        return email != null && adminEmails.contains(email.toLowerCase(Locale.ROOT));
+    }
+}
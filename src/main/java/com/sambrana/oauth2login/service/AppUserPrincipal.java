@@ -0,0 +1,74 @@
+package com.sambrana.oauth2login.service;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Slim principal kept in the session after login.
+ *
+ * Holds only the local user id, email and provider key instead of the
+ * provider's full attribute map (or OIDC ID token), so a serialized session is a
+ * few hundred bytes. {@link #getAttributes()} still answers "email" so code that
+ * reads attributes from an {@link OAuth2User} keeps working.
+ */
+public final class AppUserPrincipal implements OAuth2User, Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private static final List<GrantedAuthority> AUTHORITIES = List.of(new SimpleGrantedAuthority("OAUTH2_USER"));
+
+    private final long userId;
+    private final String email;
+    private final String provider;
+
+    public AppUserPrincipal(long userId, String email, String provider) {
+        this.userId = userId;
+        this.email = email;
+        this.provider = provider;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    /** Upper-cased registration id, e.g. "GOOGLE". */
+    public String getProvider() {
+        return provider;
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return Map.of(
+                "email", email,
+                "provider", provider,
+                LoginProvisioningService.PROVISIONED_USER_ID, userId
+        );
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return AUTHORITIES;
+    }
+
+    @Override
+    public String getName() {
+        return Long.toString(userId);
+    }
+
+    @Override
+    public String toString() {
+        return "AppUserPrincipal[userId=" + userId + ", provider=" + provider + "]";
+    }
+}
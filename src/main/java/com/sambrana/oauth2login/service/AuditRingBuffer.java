@@ -0,0 +1,76 @@
+package com.sambrana.oauth2login.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded multi-producer, single-consumer ring buffer without locks.
+ *
+ * Producers claim a sequence with one CAS on {@code tail} and publish into the
+ * slot with a release write; the single consumer takes published slots in order,
+ * clears them and advances {@code head}. A full buffer makes {@link #offer} return
+ * false immediately, so producers never wait.
+ */
+final class AuditRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // Written only by the consumer
+    private volatile long head;
+
+    AuditRingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 2) {
+            throw new IllegalArgumentException("Ring buffer capacity must be at least 2");
+        }
+        this.capacity = Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    boolean offer(E element) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= capacity) {
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        slots.setRelease((int) (sequence & mask), element);
+        return true;
+    }
+
+    /**
+     * Hands up to {@code limit} elements to {@code sink}, oldest first. Consumer thread only.
+     *
+     * @return how many elements were drained
+     */
+    int drain(Consumer<? super E> sink, int limit) {
+        long sequence = head;
+        int drained = 0;
+        while (drained < limit) {
+            int index = (int) (sequence & mask);
+            E element = slots.getAcquire(index);
+            if (element == null) {
+                // Empty, or a producer claimed the slot and has not published yet
+                break;
+            }
+            slots.setPlain(index, null);
+            sequence++;
+            drained++;
+            sink.accept(element);
+        }
+        head = sequence;
+        return drained;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,371 @@
+package com.sambrana.oauth2login.service;
+
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.client.RestClient;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of resized provider avatars.
+ *
+ * The first request for an upstream image downloads it once (allow-listed hosts
+ * only, redirects not followed, capped in bytes and, before decoding, in pixels),
+ * renders every {@link Variant} as a square PNG and stores them
+ * as {@code <url-hash>-<variant>-<content-hash>.png}, so the content hash doubles as
+ * a strong ETag. Total size is bounded; least recently used files are deleted
+ * first. The index is rebuilt from the directory on startup.
+ */
+@Component
+public class AvatarCache {
+
+    public enum Variant {
+        SMALL(48), MEDIUM(128);
+
+        private final int pixels;
+
+        Variant(int pixels) {
+            this.pixels = pixels;
+        }
+
+        public static Variant parse(String value) {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        }
+
+        String fileTag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /** A stored variant; {@code etag} is the content hash. */
+    public record Entry(Path file, long size, String etag) {
+    }
+
+    /** A stored variant with its file already open; the caller closes {@code content}. */
+    public record OpenEntry(Entry entry, InputStream content) {
+    }
+
+    /** The upstream image could not be fetched or decoded. */
+    public static class AvatarUnavailableException extends RuntimeException {
+        public AvatarUnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarCache.class);
+
+    private final Path directory;
+    private final long maxCacheBytes;
+    private final long maxUpstreamBytes;
+    private final long maxUpstreamPixels;
+    private final Set<String> allowedHosts;
+    private final RestClient restClient;
+
+    // Access-ordered, so iteration starts at the least recently used entry. Guarded by itself.
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    // Striped, so concurrent first requests for one image download it once
+    private final Object[] fetchLocks = new Object[64];
+
+    public AvatarCache(
+            CloseableHttpClient outboundHttpClient,
+            @Value("${app.avatar.cache-dir:${java.io.tmpdir}/oauth2-login-avatars}") Path directory,
+            @Value("${app.avatar.max-cache-size:256MB}") DataSize maxCacheSize,
+            @Value("${app.avatar.max-upstream-size:5MB}") DataSize maxUpstreamSize,
+            @Value("${app.avatar.max-upstream-pixels:16777216}") long maxUpstreamPixels,
+            @Value("${app.avatar.allowed-hosts:lh3.googleusercontent.com,avatars.githubusercontent.com}") Set<String> allowedHosts
+    ) throws IOException {
+        this.directory = directory;
+        this.maxCacheBytes = maxCacheSize.toBytes();
+        this.maxUpstreamBytes = maxUpstreamSize.toBytes();
+        this.maxUpstreamPixels = maxUpstreamPixels;
+        this.allowedHosts = allowedHosts;
+        // The shared pool and timeouts, but a 3xx is returned rather than followed: the allow-list
+        // is only checked against the URL we were given, not wherever it redirects to
+        this.restClient = RestClient.builder()
+                .requestFactory(new HttpComponentsClientHttpRequestFactory(outboundHttpClient) {
+                    @Override
+                    protected RequestConfig mergeRequestConfig(RequestConfig clientConfig) {
+                        return RequestConfig.copy(super.mergeRequestConfig(clientConfig))
+                                .setRedirectsEnabled(false)
+                                .build();
+                    }
+                })
+                .build();
+        for (int i = 0; i < fetchLocks.length; i++) {
+            fetchLocks[i] = new Object();
+        }
+        Files.createDirectories(directory);
+        loadIndex();
+    }
+
+    /** Short, stable fingerprint of an upstream URL; changes whenever the provider URL does. */
+    public static String version(String upstreamUrl) {
+        return sha256(upstreamUrl.getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+    }
+
+    /**
+     * The stored variant for {@code upstreamUrl}, downloading and rendering it on a miss.
+     *
+     * @throws AvatarUnavailableException if the image can't be fetched or decoded
+     */
+    public Entry get(String upstreamUrl, Variant variant) {
+        String key = sha256(upstreamUrl.getBytes(StandardCharsets.UTF_8));
+        Entry entry = lookup(key, variant);
+        if (entry != null) {
+            return entry;
+        }
+        synchronized (fetchLocks[Math.floorMod(key.hashCode(), fetchLocks.length)]) {
+            entry = lookup(key, variant);
+            if (entry != null) {
+                return entry;
+            }
+            BufferedImage source = download(upstreamUrl);
+            for (Variant each : Variant.values()) {
+                if (each != variant) {
+                    store(key, each, resize(source, each.pixels));
+                }
+            }
+            // Last, so making room for the other variants can't evict the one being returned
+            return store(key, variant, resize(source, variant.pixels));
+        }
+    }
+
+    /**
+     * {@link #get}, with the file opened before returning: a variant evicted after the
+     * lookup would otherwise be deleted before the response streams it. A file that is
+     * already gone is dropped from the index and treated as a miss.
+     *
+     * @throws AvatarUnavailableException if the image can't be fetched or decoded
+     */
+    public OpenEntry open(String upstreamUrl, Variant variant) {
+        for (int attempt = 1; ; attempt++) {
+            Entry entry = get(upstreamUrl, variant);
+            try {
+                // On POSIX the open handle keeps the content readable even if it is evicted now
+                return new OpenEntry(entry, Files.newInputStream(entry.file()));
+            } catch (NoSuchFileException e) {
+                forget(entry);
+                if (attempt == 3) {
+                    throw new AvatarUnavailableException("Avatar variant keeps being evicted: " + entry.file(), e);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open avatar variant " + entry.file(), e);
+            }
+        }
+    }
+
+    private Entry lookup(String key, Variant variant) {
+        synchronized (index) {
+            return index.get(key + "-" + variant.fileTag());
+        }
+    }
+
+    private BufferedImage download(String upstreamUrl) {
+        URI uri = URI.create(upstreamUrl);
+        if (!("https".equals(uri.getScheme()) || "http".equals(uri.getScheme()))
+                || uri.getHost() == null || !allowedHosts.contains(uri.getHost())) {
+            throw new AvatarUnavailableException("Avatar host not allowed: " + uri.getHost(), null);
+        }
+        try {
+            byte[] bytes = restClient.get()
+                    .uri(uri)
+                    .exchange((request, response) -> {
+                        if (!response.getStatusCode().is2xxSuccessful()) {
+                            throw new IOException("Upstream returned " + response.getStatusCode());
+                        }
+                        try (InputStream body = response.getBody()) {
+                            byte[] read = body.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, maxUpstreamBytes + 1));
+                            if (read.length > maxUpstreamBytes) {
+                                throw new IOException("Upstream image larger than " + maxUpstreamBytes + " bytes");
+                            }
+                            return read;
+                        }
+                    });
+            return decode(bytes, maxUpstreamPixels);
+        } catch (IOException | RuntimeException e) {
+            throw new AvatarUnavailableException("Could not fetch avatar " + upstreamUrl, e);
+        }
+    }
+
+    /**
+     * Decodes {@code bytes}, refusing images over {@code maxPixels} before any pixel data
+     * is read: a file within the byte cap can still declare a canvas of gigabytes.
+     */
+    static BufferedImage decode(byte[] bytes, long maxPixels) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new IOException("Upstream image is " + width + "x" + height
+                            + ", over " + maxPixels + " pixels");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /** Center-crops to a square and scales down in halving steps, which keeps bilinear scaling smooth. */
+    static BufferedImage resize(BufferedImage source, int pixels) {
+        int side = Math.min(source.getWidth(), source.getHeight());
+        BufferedImage current = source.getSubimage(
+                (source.getWidth() - side) / 2, (source.getHeight() - side) / 2, side, side);
+        int currentSize = side;
+        do {
+            currentSize = Math.max(pixels, currentSize / 2);
+            BufferedImage next = new BufferedImage(currentSize, currentSize, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = next.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(current, 0, 0, currentSize, currentSize, null);
+            graphics.dispose();
+            current = next;
+        } while (currentSize != pixels);
+        return current;
+    }
+
+    private Entry store(String key, Variant variant, BufferedImage image) {
+        try {
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", png);
+            byte[] bytes = png.toByteArray();
+            String etag = sha256(bytes).substring(0, 32);
+
+            Path file = directory.resolve(key + "-" + variant.fileTag() + "-" + etag + ".png");
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temp, bytes);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            Entry entry = new Entry(file, bytes.length, etag);
+            put(key + "-" + variant.fileTag(), entry);
+            return entry;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not store avatar variant", e);
+        }
+    }
+
+    private void put(String indexKey, Entry entry) {
+        synchronized (index) {
+            Entry replaced = index.put(indexKey, entry);
+            totalBytes += entry.size();
+            if (replaced != null) {
+                totalBytes -= replaced.size();
+                if (!replaced.file().equals(entry.file())) {
+                    deleteQuietly(replaced.file());
+                }
+            }
+            evictOverflow(indexKey);
+        }
+    }
+
+    /** Drops {@code entry} if the index still maps its key to it. */
+    private void forget(Entry entry) {
+        String name = entry.file().getFileName().toString();
+        String indexKey = name.substring(0, name.lastIndexOf('-'));
+        synchronized (index) {
+            if (index.remove(indexKey, entry)) {
+                totalBytes -= entry.size();
+            }
+        }
+    }
+
+    // Caller holds the index lock. The entry just put is kept even if it alone exceeds the limit.
+    private void evictOverflow(String justPut) {
+        Iterator<Map.Entry<String, Entry>> eldest = index.entrySet().iterator();
+        while (totalBytes > maxCacheBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> next = eldest.next();
+            if (next.getKey().equals(justPut)) {
+                continue;
+            }
+            Entry evicted = next.getValue();
+            eldest.remove();
+            totalBytes -= evicted.size();
+            // A response already streaming this file keeps its open handle
+            deleteQuietly(evicted.file());
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().endsWith(".png")).toList();
+        }
+        record Found(Path file, long size, long modified) {
+        }
+        List<Found> found = files.stream().map(file -> {
+            try {
+                return new Found(file, Files.size(file), Files.getLastModifiedTime(file).toMillis());
+            } catch (IOException e) {
+                return null;
+            }
+        }).filter(f -> f != null).sorted(Comparator.comparingLong(Found::modified)).toList();
+
+        for (Found f : found) {
+            String name = f.file().getFileName().toString();
+            String[] parts = name.substring(0, name.length() - ".png".length()).split("-");
+            if (parts.length != 3) {
+                continue;
+            }
+            put(parts[0] + "-" + parts[1], new Entry(f.file(), f.size(), parts[2]));
+        }
+        logger.info("Avatar cache at {}: {} files, {} bytes", directory, index.size(), totalBytes);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete cached avatar {}", file, e);
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.sambrana.oauth2login.service;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Minimal consecutive-failure circuit breaker for outbound provider calls.
+ *
+ * After {@code failureThreshold} failures in a row the breaker opens and
+ * {@link #tryAcquire()} fails fast for {@code openDuration}. Then one trial
+ * call is let through (half-open): success closes the breaker, failure opens it
+ * again.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Clock clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtMillis;
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+        this(name, failureThreshold, openDuration, Clock.systemUTC());
+    }
+
+    CircuitBreaker(String name, int failureThreshold, Duration openDuration, Clock clock) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.clock = clock;
+    }
+
+    /** Returns false when the call should not be attempted. */
+    public synchronized boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN && clock.millis() - openedAtMillis >= openDuration.toMillis()) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+        // OPEN inside the window, or HALF_OPEN with the trial call still in flight
+        return false;
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAtMillis = clock.millis();
+        }
+    }
+
+    /**
+     * The caller gave up on the call (interrupted it) before it had an outcome. Nothing is
+     * counted, but a half-open trial slot is handed back so the next call can be the trial.
+     */
+    public synchronized void recordAbandoned() {
+        if (state == State.HALF_OPEN) {
+            // openedAtMillis is already past the window, so tryAcquire lets the next call through
+            state = State.OPEN;
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    public String name() {
+        return name;
+    }
+}
@@ -1,43 +1,38 @@
 package com.sambrana.oauth2login.service;
 
-import com.sambrana.oauth2login.model.User;
-import com.sambrana.oauth2login.model.AuthProvider;
-import com.sambrana.oauth2login.repository.UserRepository;
-import com.sambrana.oauth2login.repository.AuthProviderRepository;
+import com.sambrana.oauth2login.config.SessionFootprint;
+import com.sambrana.oauth2login.repository.ProvisioningRepository.LinkedUser;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary; // <-- IMPORT @Primary
-import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.client.ClientHttpRequestFactory;
 // --- Use the GENERIC imports again ---
 import org.springframework.security.oauth2.client.userinfo.DefaultOAuth2UserService;
 import org.springframework.security.oauth2.client.userinfo.OAuth2UserRequest;
 import org.springframework.security.oauth2.client.userinfo.OAuth2UserService;
+import org.springframework.security.oauth2.client.http.OAuth2ErrorResponseErrorHandler;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 // --- END GENERIC imports ---
 import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
 import org.springframework.security.oauth2.core.OAuth2Error;
 
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.transaction.support.TransactionSynchronizationManager;
-import org.springframework.transaction.support.TransactionSynchronization;
 
 import jakarta.annotation.PostConstruct;
 
-import java.time.LocalDateTime;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 @Primary // <-- ADD @Primary annotation to prioritize this bean
@@ -47,15 +42,37 @@ public class CustomOAuth2UserService implements OAuth2UserService<OAuth2UserRequ
     private static final Logger logger = LoggerFactory.getLogger(CustomOAuth2UserService.class);
 
     @Autowired
-    private UserRepository userRepository;
+    private LoginProvisioningService loginProvisioningService;
 
     @Autowired
-    private AuthProviderRepository authProviderRepository;
+    private GitHubEmailClient gitHubEmailClient;
+
+    @Autowired
+    private ClientHttpRequestFactory outboundRequestFactory;
+
+    @Autowired
+    private ExecutorService providerCallExecutor;
+
+    @Autowired
+    private SessionFootprint sessionFootprint;
+
+    @Autowired
+    private LoginMetrics loginMetrics;
+
+    // When on, the GitHub email lookup runs concurrently with the user-info call
+    @Value("${app.login.provider-fanout.enabled:false}")
+    private boolean providerFanout;
+
+    @Value("${app.login.provider-fanout.timeout:5s}")
+    private Duration providerFanoutTimeout;
+
+    private final DefaultOAuth2UserService delegate = new DefaultOAuth2UserService();
 
     @PostConstruct
     public void init() {
-        System.out.println("<<<<<<<< CustomOAuth2UserService BEAN CREATED SUCCESSFULLY >>>>>>>>");
-        logger.info("<<<<<<<< CustomOAuth2UserService BEAN CREATED SUCCESSFULLY (via logger) >>>>>>>>");
+        RestTemplate restTemplate = new RestTemplate(outboundRequestFactory);
+        restTemplate.setErrorHandler(new OAuth2ErrorResponseErrorHandler());
+        delegate.setRestOperations(restTemplate);
     }
 
     // --- Method signature uses GENERIC types again ---
@@ -64,204 +81,129 @@ public class CustomOAuth2UserService implements OAuth2UserService<OAuth2UserRequ
 // ...
 
     @Override
-    @Transactional
     public OAuth2User loadUser(OAuth2UserRequest userRequest) throws OAuth2AuthenticationException {
 
-        // Use the simple System.out.println for initial check
-        System.out.println("***** EXECUTING CustomOAuth2UserService.loadUser (GENERIC VERSION) *****");
-        logger.info(">>> Entered loadUser method (GENERIC). Attempting to load default user...");
-
-        // Use the DefaultOAuth2UserService
-        OAuth2UserService<OAuth2UserRequest, OAuth2User> delegate = new DefaultOAuth2UserService();
-        OAuth2User oAuth2User = delegate.loadUser(userRequest);
+        // Per-login detail goes to the audit log (LoginAuditLog), not to per-step log lines
+        String provider = userRequest.getClientRegistration().getRegistrationId().toUpperCase();
+        // Completed by the success handler, or below if the login fails here
+        LoginTrace trace = loginMetrics.begin(provider);
+        try {
+            return loadUser(userRequest, provider, trace);
+        } catch (RuntimeException ex) {
+            trace.failed("provider_error");
+            loginMetrics.complete(trace);
+            throw ex;
+        }
+    }
 
-        logger.info(">>> Default user loaded successfully. Starting transaction block. Is transaction active? {}", TransactionSynchronizationManager.isActualTransactionActive());
+    private OAuth2User loadUser(OAuth2UserRequest userRequest, String provider, LoginTrace trace) {
+        if (!"GITHUB".equals(provider) && !"GOOGLE".equals(provider)) {
+            logger.error("Unsupported provider detected: {}", provider);
+            trace.failed("unsupported_provider");
+            throw new OAuth2AuthenticationException("Unsupported provider: " + provider);
+        }
 
-        // --- CHANGE 1: Make a MUTABLE copy of the attributes ---
-        Map<String, Object> attributes = new java.util.HashMap<>(oAuth2User.getAttributes());
+        long deadline = System.nanoTime() + providerFanoutTimeout.toNanos();
+        String accessToken = userRequest.getAccessToken().getTokenValue();
 
-        String finalEmail = null;
+        // Fan-out: start the email lookup speculatively so login costs max(user-info, emails)
+        // instead of their sum. The GitHub id isn't known yet, so the cache is checked once user-info
+        // returns it, and the result is cached under it. Abandoned lookups are cancelled without an
+        // interrupt: one already in flight finishes normally, so the breaker only sees real outcomes.
+        Future<Optional<String>> emailLookup = null;
+        if (providerFanout && "GITHUB".equals(provider)) {
+            emailLookup = providerCallExecutor.submit(() -> gitHubEmailClient.fetchPrimaryEmail(null, accessToken));
+        }
 
+        // Use the DefaultOAuth2UserService (shared, on the pooled outbound client)
+        OAuth2User oAuth2User;
         try {
-            String provider = userRequest.getClientRegistration().getRegistrationId().toUpperCase();
-            
-            // We no longer get attributes here, we use the mutable map from above
-            logger.info(">>> Inside try block. Provider: {}. Attributes obtained.", provider);
-
-            String providerUserId;
-            String email = (String) attributes.get("email"); // Read from our mutable map
-            String name;
-            String avatarUrl;
-
-            // Provider specific attribute fetching logic
-            if ("GITHUB".equals(provider)) {
-                providerUserId = attributes.get("id").toString();
-                name = (String) attributes.get("name");
-                avatarUrl = (String) attributes.get("avatar_url");
-                
-                // --- CHANGE 2: Update the attributes map if we fetch the email ---
-                if (email == null) {
-                    logger.info(">>> GitHub email is null, attempting to fetch from API...");
-                    String fetchedEmail = getEmailFromGitHub(userRequest.getAccessToken().getTokenValue());
-                    if (fetchedEmail != null) {
-                        email = fetchedEmail;
-                        attributes.put("email", email); // <-- This is the critical fix
-                        logger.info(">>> Successfully fetched and ADDED email to attributes: {}", email);
-                    }
-                }
-            } else if ("GOOGLE".equals(provider)) {
-                 // For Google with generic service, attributes contain standard claims
-                 providerUserId = (String) attributes.get("sub"); // Use 'sub' claim
-                 name = (String) attributes.get("name");
-                 avatarUrl = (String) attributes.get("picture");
-                 // email should already be populated
-            } else {
-                 logger.error("Unsupported provider detected: {}", provider);
-                 throw new OAuth2AuthenticationException("Unsupported provider: " + provider);
-            }
-
-
-            if (email == null) {
-                 logger.error("Email is STILL null after fetching. ProviderUserId: {}", providerUserId);
-                 throw new OAuth2AuthenticationException("Email not found from provider");
+            oAuth2User = trace.time(LoginTrace.Phase.USER_INFO, () -> delegate.loadUser(userRequest));
+        } catch (RuntimeException ex) {
+            if (emailLookup != null) {
+                emailLookup.cancel(false);
             }
+            throw ex;
+        }
 
-            finalEmail = email;
-
-            // ... (All your logic for saving the User and AuthProvider is PERFECT, no changes needed) ...
-            logger.info(">>> Processing user. Email: {}, Provider: {}, ProviderUserId: {}", finalEmail, provider, providerUserId);
- 
-            Optional<AuthProvider> authProviderOpt = authProviderRepository.findByProviderAndProviderUserId(provider, providerUserId);
-            logger.info(">>> Checked for existing AuthProvider. Found: {}", authProviderOpt.isPresent());
- 
-            User user; // Declare user variable here
- 
-            if (authProviderOpt.isEmpty()) {
- 
-                logger.info("AuthProvider not found. Checking for existing user by email: {}", finalEmail);
-                Optional<User> userOpt = userRepository.findByEmail(finalEmail);
-                logger.info(">>> Checked for existing User. Found: {}", userOpt.isPresent());
- 
-                if (userOpt.isEmpty()) {
-                    logger.info("User not found by email. Creating new user for: {}", finalEmail);
-                    User newUser = new User();
-                    newUser.setEmail(finalEmail);
-                    newUser.setDisplayName(name != null ? name : "Unknown");
-                    newUser.setAvatarUrl(avatarUrl);
- 
-                    logger.info("Attempting saveAndFlush for new user...");
-                    user = userRepository.saveAndFlush(newUser);
-                    logger.info("Successfully SAVED new user with ID: {}", user.getId());
-                } else {
-                    logger.info("User already exists with ID: {}, linking provider.", userOpt.get().getId());
-                    user = userOpt.get();
-                    user.setDisplayName(name != null ? name : user.getDisplayName());
-                    user.setAvatarUrl(avatarUrl != null ? avatarUrl : user.getAvatarUrl());
-                    userRepository.save(user); // Save potential updates
+        // No copy of the attribute map: only the identity fields are kept past this method
+        LoginIdentity identity = LoginIdentity.fromAttributes(provider, oAuth2User.getAttributes());
+
+        if (emailLookup != null) {
+            Optional<String> cachedEmail = identity.email() == null
+                    ? gitHubEmailClient.cachedEmail(identity.providerUserId())
+                    : Optional.empty();
+            if (identity.email() == null && cachedEmail.isEmpty()) {
+                // In fan-out mode this phase is only the wait left over after user-info
+                Future<Optional<String>> lookup = emailLookup;
+                String fetchedEmail = trace.time(LoginTrace.Phase.GITHUB_EMAIL, () -> awaitEmail(lookup, deadline));
+                if (fetchedEmail != null) {
+                    identity = identity.withEmail(fetchedEmail);
+                    gitHubEmailClient.remember(identity.providerUserId(), fetchedEmail);
                 }
- 
-                logger.info("Attempting saveAndFlush for new AuthProvider for user ID: {}", user.getId());
-                AuthProvider newAuthProvider = new AuthProvider();
-                newAuthProvider.setUser(user);
-                newAuthProvider.setProvider(provider);
-                newAuthProvider.setProviderUserId(providerUserId);
-                newAuthProvider.setProviderEmail(finalEmail);
- 
-                authProviderRepository.saveAndFlush(newAuthProvider);
-                logger.info("Successfully SAVED auth provider for user ID: {}", user.getId());
- 
             } else {
-                logger.info("AuthProvider found. Updating existing user ID: {}", authProviderOpt.get().getUser().getId());
-                user = authProviderOpt.get().getUser();
-                user.setDisplayName(name != null ? name : user.getDisplayName());
-                user.setAvatarUrl(avatarUrl != null ? avatarUrl : user.getAvatarUrl());
-                userRepository.save(user);
-                logger.info("Successfully updated existing user ID: {}", user.getId());
+                // Not needed after all: a queued lookup never starts, one in flight completes
+                emailLookup.cancel(false);
+                if (cachedEmail.isPresent()) {
+                    identity = identity.withEmail(cachedEmail.get());
+                }
             }
+        }
 
-            logger.info(">>> Reached end of try block. Registering after-commit action.");
+        // --- CHANGE 2: Fall back to the GitHub email API ---
+        if (emailLookup == null && identity.email() == null && "GITHUB".equals(provider)) {
+            logger.debug(">>> GitHub email is null, attempting to fetch from API...");
+            String providerUserId = identity.providerUserId();
+            String fetchedEmail = trace.time(LoginTrace.Phase.GITHUB_EMAIL, () -> gitHubEmailClient
+                    .fetchPrimaryEmail(providerUserId, accessToken)
+                    .orElse(null));
+            if (fetchedEmail != null) {
+                identity = identity.withEmail(fetchedEmail);
+                logger.debug(">>> Successfully fetched email from GitHub API for user {}", providerUserId);
+            }
+        }
 
-            final String emailForLogging = finalEmail;
-            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-                @Override
-                public void afterCommit() {
-                    logger.info(">>> TRANSACTION COMMITTED SUCCESSFULLY for email: {}", emailForLogging);
-                }
-                @Override
-                public void afterCompletion(int status) {
-                     if (status != STATUS_COMMITTED) {
-                         logger.error("XXX TRANSACTION FAILED OR ROLLED BACK for email: {}. Status: {}", emailForLogging, status == STATUS_ROLLED_BACK ? "ROLLED_BACK" : "UNKNOWN");
-                     }
-                }
-            });
+        if (identity.email() == null) {
+            logger.error("Email is STILL null after fetching. ProviderUserId: {}", identity.providerUserId());
+            trace.failed("email_missing");
+            throw new OAuth2AuthenticationException("Email not found from provider");
+        }
 
+        LinkedUser user;
+        try {
+            user = loginProvisioningService.provision(identity, trace);
         } catch (Exception ex) {
-            logger.error("!!! FAILED TO PROCESS USER LOGIN INSIDE CATCH BLOCK !!!", ex);
+            logger.error("!!! FAILED TO PROCESS USER LOGIN for email: {}", identity.email(), ex);
+            trace.failed("database_error");
             OAuth2Error error = new OAuth2Error("DATABASE_SAVE_ERROR", "Failed to save user: " + ex.getMessage(), null);
             throw new OAuth2AuthenticationException(error, ex);
         }
-         logger.info(">>> Exiting loadUser method successfully (before commit). Is transaction active? {}", TransactionSynchronizationManager.isActualTransactionActive());
-
-        // --- CHANGE 3: Return a NEW user object with the MODIFIED attributes ---
-        
-        // Get the "name" attribute key (e.g., "sub" for Google, "id" for GitHub)
-        String nameAttributeKey = userRequest.getClientRegistration()
-                                            .getProviderDetails()
-                                            .getUserInfoEndpoint()
-                                            .getUserNameAttributeName();
-
-        // Return a new DefaultOAuth2User instance
-        return new org.springframework.security.oauth2.core.user.DefaultOAuth2User(
-            oAuth2User.getAuthorities(),
-            attributes, // Use our (potentially modified) attributes map
-            nameAttributeKey
-        );
-    }
 
-// ... (Your getEmailFromGitHub method stays the same) ...
+        // --- CHANGE 3: Return a slim principal instead of the provider's attribute map ---
+        // The session only needs to know who the user is; the success handler recognises
+        // AppUserPrincipal as already provisioned.
+        AppUserPrincipal principal = new AppUserPrincipal(user.userId(), user.email(), provider);
 
-    // getEmailFromGitHub helper function remains the same
-    private String getEmailFromGitHub(String token) {
-        String email = null;
-        try {
-            RestTemplate rt = new RestTemplate();
-            HttpHeaders headers = new HttpHeaders();
-            headers.setBearerAuth(token);
-            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
-
-            ParameterizedTypeReference<List<Map<String, Object>>> responseType =
-                new ParameterizedTypeReference<List<Map<String, Object>>>() {};
-
-            ResponseEntity<List<Map<String, Object>>> resp = rt.exchange(
-                    "https://api.github.com/user/emails",
-                    HttpMethod.GET,
-                    entity,
-                    responseType
-            );
-
-            List<Map<String, Object>> emails = resp.getBody();
-            if (emails != null) {
-                Optional<Map<String, Object>> primary = emails.stream().filter(m ->
-                    Boolean.TRUE.equals(m.get("primary")) && Boolean.TRUE.equals(m.get("verified"))
-                ).findFirst();
-
-                if (!primary.isPresent()) {
-                    primary = emails.stream().filter(m ->
-                        Boolean.TRUE.equals(m.get("verified"))
-                    ).findFirst();
-                }
+        if (sessionFootprint.isEnabled()) {
+            String registrationId = userRequest.getClientRegistration().getRegistrationId();
+            sessionFootprint.record(
+                    new OAuth2AuthenticationToken(oAuth2User, oAuth2User.getAuthorities(), registrationId),
+                    new OAuth2AuthenticationToken(principal, oAuth2User.getAuthorities(), registrationId));
+        }
+        return principal;
+    }
 
-                if (primary.isPresent()) {
-                    email = primary.get().get("email").toString();
-                     logger.info(">>> Successfully fetched primary/verified email from GitHub: {}", email);
-                } else {
-                     logger.warn(">>> Could not find primary/verified email from GitHub response.");
-                }
-            }
-        } catch (Exception ex) {
-           logger.error(">>> Failed to fetch email from GitHub API", ex);
+    private String awaitEmail(Future<Optional<String>> emailLookup, long deadline) {
+        try {
+            return emailLookup.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS).orElse(null);
+        } catch (TimeoutException ex) {
+            emailLookup.cancel(false);
+            logger.warn(">>> GitHub email lookup missed the {} login deadline", providerFanoutTimeout);
+        } catch (ExecutionException ex) {
+            logger.error(">>> GitHub email lookup failed", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
-        return email;
+        return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,179 @@
+package com.sambrana.oauth2login.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.hc.core5.http.ConnectionRequestTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Looks up a GitHub user's primary (or any verified) email via {@code /user/emails}.
+ *
+ * Uses the pooled {@code githubRestClient}, remembers resolved emails per GitHub
+ * user id for a short TTL so repeat logins skip the call, and fails fast through a
+ * circuit breaker while the API is degraded. The base URL is configurable
+ * ({@code app.github.api-base-url}) so it can be pointed at a local stub.
+ */
+@Component
+public class GitHubEmailClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitHubEmailClient.class);
+
+    private static final ParameterizedTypeReference<List<Map<String, Object>>> EMAIL_LIST =
+            new ParameterizedTypeReference<>() {};
+
+    private final RestClient githubRestClient;
+    private final Cache<String, String> emailCache;
+    private final CircuitBreaker circuitBreaker;
+
+    @Autowired
+    public GitHubEmailClient(
+            @Qualifier("githubRestClient") RestClient githubRestClient,
+            MeterRegistry meterRegistry,
+            @Value("${app.github.email-cache.ttl:10m}") Duration cacheTtl,
+            @Value("${app.github.email-cache.maximum-size:50000}") long cacheMaximumSize,
+            @Value("${app.github.circuit-breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${app.github.circuit-breaker.open-duration:30s}") Duration openDuration
+    ) {
+        this(githubRestClient, meterRegistry, cacheTtl, cacheMaximumSize, failureThreshold, openDuration,
+                Clock.systemUTC());
+    }
+
+    GitHubEmailClient(RestClient githubRestClient, MeterRegistry meterRegistry, Duration cacheTtl,
+                      long cacheMaximumSize, int failureThreshold, Duration openDuration, Clock clock) {
+        this.githubRestClient = githubRestClient;
+        this.emailCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaximumSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build();
+        this.circuitBreaker = new CircuitBreaker("github-emails", failureThreshold, openDuration, clock);
+        CaffeineCacheMetrics.monitor(meterRegistry, emailCache, "github-email");
+    }
+
+    public Optional<String> fetchPrimaryEmail(String githubUserId, String accessToken) {
+        if (githubUserId != null) {
+            String cached = emailCache.getIfPresent(githubUserId);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+
+        if (!circuitBreaker.tryAcquire()) {
+            logger.warn(">>> GitHub email API circuit is open, skipping lookup for user {}", githubUserId);
+            return Optional.empty();
+        }
+
+        List<Map<String, Object>> emails;
+        try {
+            emails = githubRestClient.get()
+                    .uri("/user/emails")
+                    .headers(headers -> headers.setBearerAuth(accessToken))
+                    .accept(MediaType.APPLICATION_JSON)
+                    .retrieve()
+                    .body(EMAIL_LIST);
+            circuitBreaker.recordSuccess();
+        } catch (HttpServerErrorException | ResourceAccessException ex) {
+            if (isAbandoned(ex)) {
+                // The login stopped waiting and interrupted the call; that says nothing about GitHub
+                circuitBreaker.recordAbandoned();
+                logger.debug(">>> GitHub email lookup for user {} was abandoned", githubUserId);
+                return Optional.empty();
+            }
+            // 5xx, timeouts and I/O errors: GitHub is degraded
+            circuitBreaker.recordFailure();
+            logger.error(">>> Failed to fetch email from GitHub API (circuit {})", circuitBreaker.state(), ex);
+            return Optional.empty();
+        } catch (RuntimeException ex) {
+            // 4xx (revoked token, missing user:email scope) or an unreadable body: GitHub answered,
+            // so this is a miss for this login only and must not trip the breaker
+            circuitBreaker.recordSuccess();
+            logger.warn(">>> GitHub email lookup failed for user {}: {}", githubUserId, ex.getMessage());
+            return Optional.empty();
+        }
+
+        Optional<String> email = selectEmail(emails);
+        if (email.isPresent()) {
+            logger.debug(">>> Successfully fetched primary/verified email from GitHub: {}", email.get());
+            if (githubUserId != null) {
+                emailCache.put(githubUserId, email.get());
+            }
+        } else {
+            logger.warn(">>> Could not find primary/verified email from GitHub response.");
+        }
+        return email;
+    }
+
+    /** The cached email for a GitHub user id, without calling the API. */
+    public Optional<String> cachedEmail(String githubUserId) {
+        return githubUserId == null ? Optional.empty() : Optional.ofNullable(emailCache.getIfPresent(githubUserId));
+    }
+
+    /** Caches an email resolved by a lookup that did not know the GitHub user id yet. */
+    public void remember(String githubUserId, String email) {
+        if (githubUserId != null && email != null) {
+            emailCache.put(githubUserId, email);
+        }
+    }
+
+    /**
+     * An interrupt aborts a blocked read or pool lease with an InterruptedIOException (or an
+     * InterruptedException cause). Timeouts are InterruptedIOExceptions too, but they do count.
+     */
+    private static boolean isAbandoned(Exception ex) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException) {
+                return true;
+            }
+            if (cause instanceof InterruptedIOException
+                    && !(cause instanceof SocketTimeoutException)
+                    && !(cause instanceof ConnectionRequestTimeoutException)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    CircuitBreaker.State circuitState() {
+        return circuitBreaker.state();
+    }
+
+    /** Primary and verified first, otherwise the first verified address. */
+    static Optional<String> selectEmail(List<Map<String, Object>> emails) {
+        if (emails == null) {
+            return Optional.empty();
+        }
+        Optional<Map<String, Object>> primary = emails.stream().filter(m ->
+                Boolean.TRUE.equals(m.get("primary")) && Boolean.TRUE.equals(m.get("verified"))
+        ).findFirst();
+
+        if (primary.isEmpty()) {
+            primary = emails.stream().filter(m ->
+                    Boolean.TRUE.equals(m.get("verified"))
+            ).findFirst();
+        }
+        return primary.map(m -> m.get("email")).map(Object::toString);
+    }
+}
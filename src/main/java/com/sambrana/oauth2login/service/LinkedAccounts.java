@@ -0,0 +1,52 @@
+package com.sambrana.oauth2login.service;
+
+import com.sambrana.oauth2login.model.LinkedProviderView;
+import com.sambrana.oauth2login.repository.AuthProviderRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provider identities linked to users. However many users are asked for, the links
+ * are read with one {@code IN} query per {@value #BATCH_SIZE} user ids and grouped
+ * here, never one query per user.
+ */
+@Service
+public class LinkedAccounts {
+
+    static final int BATCH_SIZE = 1000;
+
+    private final AuthProviderRepository authProviderRepository;
+
+    public LinkedAccounts(AuthProviderRepository authProviderRepository) {
+        this.authProviderRepository = authProviderRepository;
+    }
+
+    @Transactional(readOnly = true)
+    public List<LinkedProviderView> forUser(long userId) {
+        return authProviderRepository.findLinkedProviders(List.of(userId));
+    }
+
+    /** Links per user id, in the order asked; users without links map to an empty list. */
+    @Transactional(readOnly = true)
+    public Map<Long, List<LinkedProviderView>> forUsers(Collection<Long> userIds) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(userIds));
+        Map<Long, List<LinkedProviderView>> links = new LinkedHashMap<>(distinct.size() * 2);
+        for (Long userId : distinct) {
+            links.put(userId, new ArrayList<>(2));
+        }
+        for (int from = 0; from < distinct.size(); from += BATCH_SIZE) {
+            List<Long> batch = distinct.subList(from, Math.min(from + BATCH_SIZE, distinct.size()));
+            for (LinkedProviderView link : authProviderRepository.findLinkedProviders(batch)) {
+                links.get(link.userId()).add(link);
+            }
+        }
+        return links;
+    }
+}
@@ -0,0 +1,32 @@
+package com.sambrana.oauth2login.service;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One line of the login audit log: who logged in with which provider, how it
+ * ended, and where the time went. Carries the local user id, never the email.
+ */
+public record LoginAuditEvent(
+        Instant timestamp,
+        String provider,
+        String outcome,
+        String failureReason,
+        Long userId,
+        double durationMs,
+        Map<String, Double> phasesMs
+) {
+
+    static LoginAuditEvent of(LoginTrace trace, LoginTrace.Outcome outcome, long durationNanos) {
+        Map<String, Double> phases = new LinkedHashMap<>();
+        for (LoginTrace.Phase phase : LoginTrace.Phase.values()) {
+            long nanos = trace.phaseNanos(phase);
+            if (nanos > 0) {
+                phases.put(phase.tag(), nanos / 1_000_000.0);
+            }
+        }
+        return new LoginAuditEvent(Instant.now(), trace.provider(), outcome.tag(), trace.failureReason(),
+                trace.userId(), durationNanos / 1_000_000.0, phases);
+    }
+}
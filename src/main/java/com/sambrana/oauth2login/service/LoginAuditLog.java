@@ -0,0 +1,162 @@
+package com.sambrana.oauth2login.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous login audit trail: one JSON line per login outcome.
+ *
+ * {@link #publish} only claims a slot in a lock-free {@link AuditRingBuffer}; a
+ * background writer drains it in batches to the {@code login.audit} logger, which
+ * {@code logback-spring.xml} routes to its own rolling file. When the buffer is
+ * full the configured overflow policy applies:
+ * <ul>
+ *   <li>{@code drop} - the event is discarded and counted in {@code login.audit.dropped}</li>
+ *   <li>{@code caller-writes} - the request thread writes the event itself</li>
+ * </ul>
+ *
+ * Disabled with {@code app.login.audit.enabled=false}.
+ */
+@Component
+@ConditionalOnProperty(name = "app.login.audit.enabled", havingValue = "true", matchIfMissing = true)
+public class LoginAuditLog implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginAuditLog.class);
+    private static final Logger auditLogger = LoggerFactory.getLogger("login.audit");
+
+    private final ObjectMapper objectMapper;
+    private final AuditRingBuffer<LoginAuditEvent> buffer;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final boolean callerWritesOnOverflow;
+
+    private final Counter dropped;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public LoginAuditLog(
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${app.login.audit.capacity:8192}") int capacity,
+            @Value("${app.login.audit.batch-size:256}") int batchSize,
+            @Value("${app.login.audit.flush-interval:200ms}") Duration flushInterval,
+            @Value("${app.login.audit.overflow:drop}") String overflow
+    ) {
+        this.objectMapper = objectMapper;
+        this.buffer = new AuditRingBuffer<>(capacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.callerWritesOnOverflow = switch (overflow) {
+            case "drop" -> false;
+            case "caller-writes" -> true;
+            default -> throw new IllegalArgumentException(
+                    "app.login.audit.overflow must be drop or caller-writes, was " + overflow);
+        };
+
+        Gauge.builder("login.audit.depth", buffer, AuditRingBuffer::size)
+                .description("Audit events waiting for the background writer")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("login.audit.dropped")
+                .description("Audit events discarded because the buffer was full")
+                .register(meterRegistry);
+    }
+
+    public void publish(LoginAuditEvent event) {
+        if (running && buffer.offer(event)) {
+            return;
+        }
+        if (callerWritesOnOverflow) {
+            StringBuilder line = new StringBuilder(256);
+            append(line, event);
+            auditLogger.info(line.toString());
+        } else {
+            dropped.increment();
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::runWriter, "login-audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Lower than the web server lifecycles, so in-flight logins still get their events written
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void runWriter() {
+        StringBuilder batch = new StringBuilder(batchSize * 256);
+        while (running) {
+            if (writeBatch(batch) < batchSize) {
+                LockSupport.parkNanos(this, flushInterval.toNanos());
+            }
+        }
+        // Whatever was published before stop
+        while (writeBatch(batch) > 0) {
+            // drain
+        }
+    }
+
+    /** Writes up to one batch as a single log call; returns how many events it held. */
+    private int writeBatch(StringBuilder batch) {
+        batch.setLength(0);
+        int count;
+        try {
+            count = buffer.drain(event -> {
+                if (!batch.isEmpty()) {
+                    batch.append('\n');
+                }
+                append(batch, event);
+            }, batchSize);
+            if (count > 0) {
+                auditLogger.info(batch.toString());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Writing login audit events failed", e);
+            return 0;
+        }
+        return count;
+    }
+
+    private void append(StringBuilder line, LoginAuditEvent event) {
+        try {
+            line.append(objectMapper.writeValueAsString(event));
+        } catch (JsonProcessingException e) {
+            logger.warn("Could not serialize login audit event for user {}", event.userId(), e);
+        }
+    }
+}
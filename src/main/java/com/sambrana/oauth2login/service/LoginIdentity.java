@@ -0,0 +1,47 @@
+package com.sambrana.oauth2login.service;
+
+import java.util.Map;
+
+/**
+ * The provider-supplied facts a login needs to resolve or create a user.
+ *
+ * @param provider       upper-cased registration id, e.g. "GOOGLE", "GITHUB"
+ * @param providerUserId the stable id at the provider ("sub" for Google, "id" for GitHub)
+ */
+public record LoginIdentity(
+        String provider,
+        String providerUserId,
+        String email,
+        String name,
+        String avatarUrl
+) {
+
+    /**
+     * Reads the identity out of a provider attribute map (OAuth2 user-info
+     * response or OIDC claims).
+     */
+    public static LoginIdentity fromAttributes(String provider, Map<String, Object> attributes) {
+        if ("GITHUB".equals(provider)) {
+            Object id = attributes.get("id");
+            return new LoginIdentity(
+                    provider,
+                    id != null ? id.toString() : null,
+                    (String) attributes.get("email"),
+                    (String) attributes.get("name"),
+                    (String) attributes.get("avatar_url")
+            );
+        }
+        // Google and other OIDC-style providers use the standard claims
+        return new LoginIdentity(
+                provider,
+                (String) attributes.get("sub"),
+                (String) attributes.get("email"),
+                (String) attributes.get("name"),
+                (String) attributes.get("picture")
+        );
+    }
+
+    public LoginIdentity withEmail(String email) {
+        return new LoginIdentity(provider, providerUserId, email, name, avatarUrl);
+    }
+}
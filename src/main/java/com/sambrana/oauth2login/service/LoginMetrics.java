@@ -0,0 +1,96 @@
+package com.sambrana.oauth2login.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes {@link LoginTrace}s as meters:
+ * <ul>
+ *   <li>{@code login.phase} timer, tagged {@code phase} and {@code provider} -
+ *       user-info, GitHub email, identity lookup, insert, profile refresh</li>
+ *   <li>{@code login.duration} timer, tagged {@code provider} and {@code outcome}
+ *       (new_user, linked, returning, failure); its count is the login counter</li>
+ *   <li>{@code login.failures} counter, tagged {@code provider} and {@code reason}</li>
+ * </ul>
+ * Histogram buckets for these come from {@code management.metrics.distribution}.
+ * Each completed trace is also handed to the {@link LoginAuditLog}, when enabled.
+ */
+@Component
+public class LoginMetrics {
+
+    private static final String TRACE_ATTRIBUTE = LoginTrace.class.getName();
+
+    private final MeterRegistry meterRegistry;
+    private final LoginAuditLog auditLog;
+
+    public LoginMetrics(MeterRegistry meterRegistry, ObjectProvider<LoginAuditLog> auditLog) {
+        this.meterRegistry = meterRegistry;
+        this.auditLog = auditLog.getIfAvailable();
+    }
+
+    /** Starts a trace and binds it to the current request, if there is one. */
+    public LoginTrace begin(String provider) {
+        LoginTrace trace = new LoginTrace(provider);
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(TRACE_ATTRIBUTE, trace, RequestAttributes.SCOPE_REQUEST);
+        }
+        return trace;
+    }
+
+    /** The trace begun earlier in this request, or a new one. */
+    public LoginTrace current(String provider) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null
+                && attributes.getAttribute(TRACE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof LoginTrace trace) {
+            return trace;
+        }
+        return begin(provider);
+    }
+
+    public void complete(LoginTrace trace) {
+        if (!trace.markCompleted()) {
+            return;
+        }
+        String provider = trace.provider();
+        for (LoginTrace.Phase phase : LoginTrace.Phase.values()) {
+            long nanos = trace.phaseNanos(phase);
+            if (nanos > 0) {
+                Timer.builder("login.phase")
+                        .description("Time spent in one phase of an OAuth2 login")
+                        .tag("phase", phase.tag())
+                        .tag("provider", provider)
+                        .register(meterRegistry)
+                        .record(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        LoginTrace.Outcome outcome = trace.outcome() != null ? trace.outcome() : LoginTrace.Outcome.FAILURE;
+        long durationNanos = System.nanoTime() - trace.startNanos();
+        Timer.builder("login.duration")
+                .description("OAuth2 login from user-info call to redirect")
+                .tag("provider", provider)
+                .tag("outcome", outcome.tag())
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+
+        if (outcome == LoginTrace.Outcome.FAILURE) {
+            Counter.builder("login.failures")
+                    .tag("provider", provider)
+                    .tag("reason", trace.failureReason() != null ? trace.failureReason() : "unknown")
+                    .register(meterRegistry)
+                    .increment();
+        }
+
+        if (auditLog != null) {
+            auditLog.publish(LoginAuditEvent.of(trace, outcome, durationNanos));
+        }
+    }
+}
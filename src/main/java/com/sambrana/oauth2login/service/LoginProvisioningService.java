@@ -0,0 +1,111 @@
+package com.sambrana.oauth2login.service;
+
+import com.sambrana.oauth2login.repository.ProvisioningRepository;
+import com.sambrana.oauth2login.repository.ProvisioningRepository.LinkResult;
+import com.sambrana.oauth2login.repository.ProvisioningRepository.LinkedUser;
+import com.sambrana.oauth2login.repository.ProvisioningRepository.ProfileRefresh;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Single place where a successful provider login is turned into a local user.
+ *
+ * Both the user-info hook ({@link CustomOAuth2UserService}) and the success
+ * handler delegate here; whichever runs first for an authentication does the
+ * work and the other one skips it. A returning user whose provider name and
+ * avatar match the stored row costs one SELECT and no writes.
+ *
+ * When the write-behind {@link ProfileRefreshQueue} is enabled, refreshes for
+ * returning users are handed to it instead of being written on the login thread;
+ * identity resolution and first-login inserts always stay synchronous.
+ *
+ * Users whose row was just written are pinned to the primary ({@link PrimaryPins})
+ * so the /api/me that follows the login doesn't read a lagging replica.
+ *
+ * Each statement is timed as a phase of the caller's {@link LoginTrace}, which also
+ * receives the outcome (new user, linked, returning).
+ */
+@Service
+public class LoginProvisioningService {
+
+    /**
+     * Principal attribute set once a login has been provisioned, carrying the local user id.
+     */
+    public static final String PROVISIONED_USER_ID = "app_user_id";
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginProvisioningService.class);
+
+    private final ProvisioningRepository provisioningRepository;
+    private final ProfileCache profileCache;
+    private final ProfileRefreshQueue profileRefreshQueue;
+    private final PrimaryPins primaryPins;
+
+    public LoginProvisioningService(ProvisioningRepository provisioningRepository, ProfileCache profileCache,
+                                    ObjectProvider<ProfileRefreshQueue> profileRefreshQueue,
+                                    PrimaryPins primaryPins) {
+        this.provisioningRepository = provisioningRepository;
+        this.profileCache = profileCache;
+        this.profileRefreshQueue = profileRefreshQueue.getIfAvailable();
+        this.primaryPins = primaryPins;
+    }
+
+    @Transactional
+    public LinkedUser provision(LoginIdentity identity, LoginTrace trace) {
+        Optional<LinkedUser> linkedOpt = trace.time(LoginTrace.Phase.LOOKUP, () ->
+                provisioningRepository.findByProviderIdentity(identity.provider(), identity.providerUserId()));
+
+        if (linkedOpt.isEmpty()) {
+            LinkResult result = trace.time(LoginTrace.Phase.INSERT, () -> provisioningRepository.upsertUserAndLink(
+                    identity.provider(), identity.providerUserId(),
+                    identity.email(), identity.name(), identity.avatarUrl()));
+            LinkedUser user = result.user();
+            profileCache.evictAfterCommit(user.email());
+            primaryPins.pin(user.email());
+            trace.succeeded(outcomeOf(result), user.userId());
+            logger.debug("Provisioned user ID {} for {} login", user.userId(), identity.provider());
+            return user;
+        }
+
+        LinkedUser user = linkedOpt.get();
+        trace.succeeded(LoginTrace.Outcome.RETURNING, user.userId());
+        if (!isProfileChanged(user, identity)) {
+            logger.debug("Provider profile unchanged for user ID {}, skipping update", user.userId());
+            return user;
+        }
+
+        ProfileRefresh refresh = new ProfileRefresh(user.userId(), user.email(), identity.name(), identity.avatarUrl());
+        if (profileRefreshQueue != null && profileRefreshQueue.offer(refresh)) {
+            logger.debug("Queued provider profile refresh for user ID {}", user.userId());
+            return user;
+        }
+
+        trace.time(LoginTrace.Phase.REFRESH, () ->
+                provisioningRepository.refreshProfile(user.userId(), identity.name(), identity.avatarUrl()));
+        profileCache.evictAfterCommit(user.email());
+        primaryPins.pin(user.email());
+        logger.debug("Refreshed provider profile for user ID {}", user.userId());
+        return user;
+    }
+
+    private static LoginTrace.Outcome outcomeOf(LinkResult result) {
+        if (!result.linked()) {
+            return LoginTrace.Outcome.RETURNING;
+        }
+        return result.userCreated() ? LoginTrace.Outcome.NEW_USER : LoginTrace.Outcome.LINKED;
+    }
+
+    /**
+     * Mirrors the COALESCE semantics of the refresh: a null provider value never
+     * overwrites, so it can't count as a change either.
+     */
+    static boolean isProfileChanged(LinkedUser stored, LoginIdentity incoming) {
+        return (incoming.name() != null && !Objects.equals(incoming.name(), stored.displayName()))
+                || (incoming.avatarUrl() != null && !Objects.equals(incoming.avatarUrl(), stored.avatarUrl()));
+    }
+}
@@ -0,0 +1,110 @@
+package com.sambrana.oauth2login.service;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Phase timings and outcome of one login, from the user-info call to the success
+ * (or failure) of the round trip. Created by {@link LoginMetrics#begin} and kept
+ * on the current request so the user service and the success handler add to the
+ * same trace; it is only ever touched by the request thread.
+ */
+public final class LoginTrace {
+
+    public enum Phase {
+        USER_INFO, GITHUB_EMAIL, LOOKUP, INSERT, REFRESH;
+
+        public String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public enum Outcome {
+        /** First login, a new local user was created. */
+        NEW_USER,
+        /** First login with this provider, linked to an existing user with the same email. */
+        LINKED,
+        /** Known provider identity. */
+        RETURNING,
+        FAILURE;
+
+        public String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final String provider;
+    private final long startNanos = System.nanoTime();
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private Outcome outcome;
+    private String failureReason;
+    private Long userId;
+    private boolean completed;
+
+    LoginTrace(String provider) {
+        this.provider = provider;
+    }
+
+    public <T> T time(Phase phase, Supplier<T> work) {
+        long t0 = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            phaseNanos[phase.ordinal()] += System.nanoTime() - t0;
+        }
+    }
+
+    public void time(Phase phase, Runnable work) {
+        time(phase, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public void succeeded(Outcome outcome, long userId) {
+        this.outcome = outcome;
+        this.userId = userId;
+    }
+
+    /** Marks the login failed; the first reason recorded wins. */
+    public void failed(String reason) {
+        if (outcome != Outcome.FAILURE) {
+            outcome = Outcome.FAILURE;
+            failureReason = reason;
+        }
+    }
+
+    public String provider() {
+        return provider;
+    }
+
+    public Outcome outcome() {
+        return outcome;
+    }
+
+    public String failureReason() {
+        return failureReason;
+    }
+
+    public Long userId() {
+        return userId;
+    }
+
+    /** Nanoseconds spent in {@code phase}; 0 if it never ran. */
+    public long phaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    long startNanos() {
+        return startNanos;
+    }
+
+    /** True the first time only, so a trace is never recorded twice. */
+    boolean markCompleted() {
+        if (completed) {
+            return false;
+        }
+        completed = true;
+        return true;
+    }
+}
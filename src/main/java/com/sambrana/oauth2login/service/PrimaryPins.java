@@ -0,0 +1,55 @@
+package com.sambrana.oauth2login.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Read-your-writes for the read replica: a user who has just written is "pinned"
+ * to the primary for {@code app.datasource.replica.pin-window}, so their next
+ * /api/me doesn't read a replica that hasn't applied the write yet. The window
+ * should be longer than the replica's usual lag.
+ *
+ * Pins are per instance (keyed by email, like {@link ProfileCache}); a user whose
+ * next request lands on another node can still see replica lag. Without a replica
+ * configured, pinning is a no-op.
+ */
+@Component
+public class PrimaryPins {
+
+    private final Cache<String, Boolean> pins;
+
+    public PrimaryPins(@Value("${app.datasource.replica.url:}") String replicaUrl,
+                       @Value("${app.datasource.replica.pin-window:5s}") Duration pinWindow,
+                       @Value("${app.datasource.replica.max-pinned-users:100000}") long maxPinnedUsers) {
+        this.pins = replicaUrl.isBlank() ? null : Caffeine.newBuilder()
+                .expireAfterWrite(pinWindow)
+                .maximumSize(maxPinnedUsers)
+                .build();
+    }
+
+    public void pin(String email) {
+        if (pins != null && email != null) {
+            pins.put(email, Boolean.TRUE);
+        }
+    }
+
+    /** Whether the user of the current request wrote within the pin window. */
+    public boolean isCurrentUserPinned() {
+        if (pins == null) {
+            return false;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof OAuth2User user)) {
+            return false;
+        }
+        String email = user.getAttribute("email");
+        return email != null && pins.getIfPresent(email) != null;
+    }
+}
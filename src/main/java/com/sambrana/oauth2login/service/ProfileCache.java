@@ -0,0 +1,92 @@
+package com.sambrana.oauth2login.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.sambrana.oauth2login.model.ProfileView;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Bounded, TTL-evicting cache of {@link ProfileView}s keyed by the user's email
+ * (the identity /api/me resolves from the principal).
+ *
+ * Hit/miss/eviction statistics are published as the "profile" cache on the
+ * actuator metrics endpoint (cache.gets, cache.evictions, ...).
+ */
+@Component
+public class ProfileCache {
+
+    public static final String CACHE_NAME = "profile";
+
+    private final Cache<String, ProfileView> cache;
+
+    public ProfileCache(
+            @Value("${app.profile-cache.maximum-size:10000}") long maximumSize,
+            @Value("${app.profile-cache.ttl:5m}") Duration ttl,
+            MeterRegistry meterRegistry
+    ) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Returns the cached view, loading it with {@code loader} on a miss.
+     * Empty results are not cached so a user created moments later is picked up.
+     */
+    public Optional<ProfileView> get(String email, Function<String, Optional<ProfileView>> loader) {
+        return Optional.ofNullable(cache.get(email, key -> loader.apply(key).orElse(null)));
+    }
+
+    /** The cached view, without loading on a miss. */
+    public Optional<ProfileView> peek(String email) {
+        return Optional.ofNullable(cache.getIfPresent(email));
+    }
+
+    public void evict(String email) {
+        if (email != null) {
+            cache.invalidate(email);
+        }
+    }
+
+    /**
+     * Evicts once the surrounding transaction commits, so a concurrent reader
+     * cannot re-populate the entry with the pre-commit row. Evicts immediately
+     * when no transaction is active.
+     */
+    public void evictAfterCommit(String email) {
+        if (email == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(email);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                evict(email);
+            }
+        });
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
@@ -0,0 +1,251 @@
+package com.sambrana.oauth2login.service;
+
+import com.sambrana.oauth2login.repository.ProvisioningRepository;
+import com.sambrana.oauth2login.repository.ProvisioningRepository.ProfileRefresh;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind queue for provider name/avatar refreshes on returning logins.
+ *
+ * Pending refreshes are held per user id, so repeated logins before a flush
+ * collapse into the latest values. The number of distinct pending users is
+ * bounded; {@link #offer} waits briefly for room and otherwise returns false so
+ * the caller can fall back to a synchronous write (back-pressure). A single
+ * background worker drains the queue in JDBC batches and the queue is flushed
+ * completely on shutdown. A batch whose write fails is not retried; its refreshes
+ * are counted in {@code login.profile_refresh.dropped} (the next login of each of
+ * those users refreshes them again).
+ *
+ * Enabled with {@code app.login.profile-refresh.mode=write-behind}.
+ */
+@Component
+@ConditionalOnProperty(name = "app.login.profile-refresh.mode", havingValue = "write-behind")
+public class ProfileRefreshQueue implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProfileRefreshQueue.class);
+
+    private final ProvisioningRepository provisioningRepository;
+    private final ProfileCache profileCache;
+    private final PrimaryPins primaryPins;
+
+    private final ConcurrentHashMap<Long, ProfileRefresh> pending = new ConcurrentHashMap<>();
+    private final Semaphore capacity;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final Duration offerTimeout;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchReady = lock.newCondition();
+
+    private final Timer flushTimer;
+    private final Counter coalesced;
+    private final Counter rejected;
+    private final Counter dropped;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public ProfileRefreshQueue(
+            ProvisioningRepository provisioningRepository,
+            ProfileCache profileCache,
+            PrimaryPins primaryPins,
+            MeterRegistry meterRegistry,
+            @Value("${app.login.profile-refresh.capacity:10000}") int capacity,
+            @Value("${app.login.profile-refresh.batch-size:200}") int batchSize,
+            @Value("${app.login.profile-refresh.flush-interval:500ms}") Duration flushInterval,
+            @Value("${app.login.profile-refresh.offer-timeout:5ms}") Duration offerTimeout
+    ) {
+        this.provisioningRepository = provisioningRepository;
+        this.profileCache = profileCache;
+        this.primaryPins = primaryPins;
+        this.capacity = new Semaphore(capacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.offerTimeout = offerTimeout;
+
+        Gauge.builder("login.profile_refresh.queue.depth", pending, ConcurrentHashMap::size)
+                .description("Users with a pending write-behind profile refresh")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("login.profile_refresh.flush")
+                .description("Latency of one write-behind batch flush")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("login.profile_refresh.coalesced")
+                .description("Refreshes merged into an already pending entry")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("login.profile_refresh.rejected")
+                .description("Refreshes refused because the queue was full")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("login.profile_refresh.dropped")
+                .description("Queued refreshes lost because their batch failed to write")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues a refresh, replacing any pending one for the same user.
+     *
+     * @return false when the queue stayed full for the offer timeout; the caller
+     *         should then write synchronously
+     */
+    public boolean offer(ProfileRefresh refresh) {
+        if (!running) {
+            return false;
+        }
+        if (pending.computeIfPresent(refresh.userId(), (id, previous) -> refresh) != null) {
+            coalesced.increment();
+            return !withdrawnAfterStop(refresh);
+        }
+        try {
+            if (!capacity.tryAcquire(offerTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                rejected.increment();
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        if (pending.put(refresh.userId(), refresh) != null) {
+            // Another login for the same user raced us in; it already holds a permit
+            capacity.release();
+            coalesced.increment();
+        }
+        if (withdrawnAfterStop(refresh)) {
+            return false;
+        }
+        if (pending.size() >= batchSize) {
+            signalWorker();
+        }
+        return true;
+    }
+
+    /**
+     * An offer that passed the running check can still land after stop()'s final
+     * drain. stop() clears running before draining, so re-reading it here catches
+     * that case: the refresh is taken back out (unless a flush already wrote it)
+     * and the caller writes it synchronously.
+     */
+    private boolean withdrawnAfterStop(ProfileRefresh refresh) {
+        if (running || !pending.remove(refresh.userId(), refresh)) {
+            return false;
+        }
+        capacity.release();
+        return true;
+    }
+
+    public int depth() {
+        return pending.size();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        worker = new Thread(this::runWorker, "profile-refresh-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        signalWorker();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Whatever the worker did not get to
+        while (!pending.isEmpty()) {
+            flush();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void runWorker() {
+        boolean backOff = false;
+        while (running) {
+            lock.lock();
+            try {
+                if (backOff || pending.size() < batchSize) {
+                    batchReady.await(flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                int written;
+                do {
+                    // keep draining full batches while the backlog lasts
+                    written = flush();
+                } while (running && written == batchSize);
+                // After a failed write, wait out the interval even if a full batch is pending
+                backOff = written == 0 && !pending.isEmpty();
+            } catch (RuntimeException e) {
+                logger.error("Write-behind profile refresh flush failed", e);
+            }
+        }
+    }
+
+    /** Writes up to one batch; returns how many refreshes were written (0 if the write failed). */
+    private int flush() {
+        List<ProfileRefresh> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Iterator<Long> ids = pending.keySet().iterator();
+        while (ids.hasNext() && batch.size() < batchSize) {
+            ProfileRefresh refresh = pending.remove(ids.next());
+            if (refresh != null) {
+                capacity.release();
+                batch.add(refresh);
+            }
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try {
+            flushTimer.record(() -> provisioningRepository.refreshProfiles(batch));
+        } catch (RuntimeException e) {
+            dropped.increment(batch.size());
+            logger.error("Dropped {} write-behind profile refreshes after a failed flush", batch.size(), e);
+            return 0;
+        }
+        batch.forEach(refresh -> {
+            profileCache.evict(refresh.email());
+            primaryPins.pin(refresh.email());
+        });
+        logger.debug("Flushed {} write-behind profile refreshes", batch.size());
+        return batch.size();
+    }
+
+    private void signalWorker() {
+        lock.lock();
+        try {
+            batchReady.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.sambrana.oauth2login.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.security.oauth2.client.http.OAuth2ErrorResponseErrorHandler;
+import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserRequest;
+import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserService;
+import org.springframework.security.oauth2.client.userinfo.DefaultOAuth2UserService;
+import org.springframework.security.oauth2.client.userinfo.OAuth2UserService;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * The stock {@link OidcUserService} (Google), on the pooled outbound client, with
+ * its user-info call timed as the first phase of the login's {@link LoginTrace}.
+ * Provisioning for OIDC logins happens later, in the success handler.
+ */
+@Service
+public class TimedOidcUserService implements OAuth2UserService<OidcUserRequest, OidcUser> {
+
+    @Autowired
+    private LoginMetrics loginMetrics;
+
+    @Autowired
+    private ClientHttpRequestFactory outboundRequestFactory;
+
+    private final OidcUserService delegate = new OidcUserService();
+
+    @PostConstruct
+    public void init() {
+        RestTemplate restTemplate = new RestTemplate(outboundRequestFactory);
+        restTemplate.setErrorHandler(new OAuth2ErrorResponseErrorHandler());
+        DefaultOAuth2UserService userInfoService = new DefaultOAuth2UserService();
+        userInfoService.setRestOperations(restTemplate);
+        delegate.setOauth2UserService(userInfoService);
+    }
+
+    @Override
+    public OidcUser loadUser(OidcUserRequest userRequest) throws OAuth2AuthenticationException {
+        String provider = userRequest.getClientRegistration().getRegistrationId().toUpperCase();
+        LoginTrace trace = loginMetrics.begin(provider);
+        try {
+            return trace.time(LoginTrace.Phase.USER_INFO, () -> delegate.loadUser(userRequest));
+        } catch (RuntimeException ex) {
+            trace.failed("provider_error");
+            loginMetrics.complete(trace);
+            throw ex;
+        }
+    }
+}
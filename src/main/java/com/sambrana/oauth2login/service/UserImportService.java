@@ -0,0 +1,316 @@
+package com.sambrana.oauth2login.service;
+
+import com.sambrana.oauth2login.repository.UserImportRepository;
+import com.sambrana.oauth2login.repository.UserImportRepository.ImportedIdentity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk import of users and provider links, for seeding identities migrated from
+ * another system.
+ *
+ * The input is the CSV the user export writes (header row; {@code email},
+ * {@code display_name}, {@code avatar_url} and {@code providers} columns, where
+ * providers is {@code PROVIDER:provider_user_id} pairs separated by {@code ;}).
+ * It is read in chunks; each chunk is de-duplicated by email and by provider
+ * identity, then written by one of several workers in its own transaction with
+ * JDBC batches ({@link UserImportRepository}). Duplicates across chunks, and rows
+ * that already exist, are absorbed by the unique keys.
+ *
+ * Progress is checkpointed to {@code <file>.checkpoint} as the number of input
+ * records whose chunks have all committed; a rerun skips that many records. Because
+ * every insert is idempotent, chunks in flight at a crash are simply redone.
+ */
+@Service
+public class UserImportService {
+
+    public record ImportReport(long records, long identities, long duplicates, long skipped, long resumedFrom,
+                               long elapsedMillis) {
+
+        public double recordsPerSecond() {
+            return elapsedMillis == 0 ? 0 : (records - resumedFrom) * 1000.0 / elapsedMillis;
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(UserImportService.class);
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final UserImportRepository userImportRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int threads;
+
+    public UserImportService(UserImportRepository userImportRepository, TransactionTemplate transactionTemplate,
+                             @Value("${app.import.chunk-size:5000}") int chunkSize,
+                             @Value("${app.import.threads:4}") int threads) {
+        this.userImportRepository = userImportRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.threads = threads;
+    }
+
+    public ImportReport importFile(Path file) throws IOException, InterruptedException {
+        Path checkpointFile = file.resolveSibling(file.getFileName() + ".checkpoint");
+        Checkpoint checkpoint = new Checkpoint(checkpointFile, readCheckpoint(checkpointFile));
+        long start = System.nanoTime();
+        AtomicLong identities = new AtomicLong();
+        AtomicLong duplicates = new AtomicLong();
+        AtomicLong skipped = new AtomicLong();
+        long records = 0;
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        // At most two chunks queued per worker, so the reader can't run ahead of the database
+        Semaphore inFlight = new Semaphore(threads * 2);
+        List<Future<?>> pending = new ArrayList<>();
+        try (CsvRecordReader reader = new CsvRecordReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            Columns columns = Columns.of(reader.next());
+            if (checkpoint.committed() > 0) {
+                logger.info("Resuming import of {} after record {}", file, checkpoint.committed());
+            }
+
+            List<List<String>> chunk = new ArrayList<>(chunkSize);
+            int chunkIndex = 0;
+            long lastProgress = System.nanoTime();
+            List<String> row;
+            while ((row = reader.next()) != null) {
+                if (row.size() == 1 && row.get(0).isEmpty()) {
+                    continue;
+                }
+                records++;
+                if (records <= checkpoint.committed()) {
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    pending.add(submit(workers, inFlight, checkpoint, chunkIndex++, records, chunk, columns,
+                            identities, duplicates, skipped));
+                    chunk = new ArrayList<>(chunkSize);
+                }
+                if (System.nanoTime() - lastProgress > 10_000_000_000L) {
+                    lastProgress = System.nanoTime();
+                    logger.info("Import progress: {} records read, {} committed", records, checkpoint.committed());
+                }
+            }
+            if (!chunk.isEmpty()) {
+                pending.add(submit(workers, inFlight, checkpoint, chunkIndex, records, chunk, columns,
+                        identities, duplicates, skipped));
+            }
+
+            for (Future<?> future : pending) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Import of " + file + " failed; rerun to resume from the checkpoint",
+                    e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+
+        Files.deleteIfExists(checkpointFile);
+        return new ImportReport(records, identities.get(), duplicates.get(), skipped.get(),
+                checkpoint.initial(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private Future<?> submit(ExecutorService workers, Semaphore inFlight, Checkpoint checkpoint, int chunkIndex,
+                             long endRecord, List<List<String>> rows, Columns columns,
+                             AtomicLong identities, AtomicLong duplicates, AtomicLong skipped) throws InterruptedException {
+        inFlight.acquire();
+        checkpoint.register(chunkIndex, endRecord);
+        return workers.submit(() -> {
+            try {
+                Chunk chunk = Chunk.of(rows, columns);
+                identities.addAndGet(writeChunk(chunk));
+                duplicates.addAndGet(chunk.duplicates());
+                skipped.addAndGet(chunk.skipped());
+                checkpoint.completed(chunkIndex);
+            } finally {
+                inFlight.release();
+            }
+            return null;
+        });
+    }
+
+    /** Writes the chunk in one transaction; returns the number of provider links it added. */
+    private int writeChunk(Chunk chunk) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> {
+                    userImportRepository.insertUsers(chunk.users());
+                    Map<String, Long> ids = userImportRepository.findIdsByEmail(
+                            chunk.users().stream().map(ImportedIdentity::email).toList());
+                    return userImportRepository.insertLinks(chunk.identities(), ids);
+                });
+            } catch (PessimisticLockingFailureException e) {
+                // Concurrent chunks touching neighbouring unique-key ranges can deadlock; the loser retries
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                logger.debug("Import chunk hit a lock conflict, retrying (attempt {})", attempt, e);
+            }
+        }
+    }
+
+    private static long readCheckpoint(Path checkpointFile) throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        return Long.parseLong(Files.readString(checkpointFile).trim());
+    }
+
+    /** Header positions of the columns the import reads. */
+    private record Columns(int email, int displayName, int avatarUrl, int providers) {
+
+        static Columns of(List<String> header) {
+            if (header == null) {
+                throw new IllegalArgumentException("Import file is empty");
+            }
+            List<String> names = header.stream().map(name -> name.trim().toLowerCase(Locale.ROOT)).toList();
+            if (!names.contains("email") || !names.contains("providers")) {
+                throw new IllegalArgumentException("Import file needs email and providers columns, has " + names);
+            }
+            return new Columns(names.indexOf("email"), names.indexOf("display_name"),
+                    names.indexOf("avatar_url"), names.indexOf("providers"));
+        }
+
+        String get(List<String> row, int index) {
+            if (index < 0 || index >= row.size()) {
+                return null;
+            }
+            String value = row.get(index);
+            if (value.isEmpty()) {
+                return null;
+            }
+            // Undo the export's spreadsheet-formula guard, which also prefixes values starting with '
+            if (value.charAt(0) == '\'') {
+                return value.substring(1);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * One chunk after de-duplication: users unique by email (case-insensitive, sorted
+     * so concurrent chunks lock keys in the same order) and identities unique by
+     * provider + provider user id. The first occurrence wins.
+     */
+    private record Chunk(List<ImportedIdentity> users, List<ImportedIdentity> identities, long duplicates,
+                         long skipped) {
+
+        static Chunk of(List<List<String>> rows, Columns columns) {
+            Map<String, ImportedIdentity> users = new HashMap<>();
+            Map<String, ImportedIdentity> identities = new LinkedHashMap<>();
+            long duplicates = 0;
+            long skipped = 0;
+            for (List<String> row : rows) {
+                String email = columns.get(row, columns.email());
+                String providers = columns.get(row, columns.providers());
+                if (email == null || providers == null) {
+                    skipped++;
+                    continue;
+                }
+                String displayName = columns.get(row, columns.displayName());
+                String avatarUrl = columns.get(row, columns.avatarUrl());
+                users.putIfAbsent(email.toLowerCase(Locale.ROOT),
+                        new ImportedIdentity(email, displayName, avatarUrl, null, null));
+                for (String link : providers.split(";")) {
+                    int colon = link.indexOf(':');
+                    if (colon <= 0 || colon == link.length() - 1) {
+                        continue;
+                    }
+                    String provider = link.substring(0, colon).trim().toUpperCase(Locale.ROOT);
+                    String providerUserId = link.substring(colon + 1).trim();
+                    ImportedIdentity identity = new ImportedIdentity(email, displayName, avatarUrl,
+                            provider, providerUserId);
+                    if (identities.putIfAbsent(provider + ":" + providerUserId, identity) != null) {
+                        duplicates++;
+                    }
+                }
+            }
+            List<ImportedIdentity> sortedUsers = new ArrayList<>(users.values());
+            sortedUsers.sort(Comparator.comparing(user -> user.email().toLowerCase(Locale.ROOT)));
+            return new Chunk(sortedUsers, List.copyOf(identities.values()), duplicates, skipped);
+        }
+    }
+
+    /**
+     * Committed-prefix tracking for out-of-order chunk completion: the checkpoint only
+     * moves past a chunk once every earlier chunk has committed too.
+     */
+    private static final class Checkpoint {
+
+        private final Path file;
+        private final long initial;
+        private final TreeMap<Integer, Long> chunkEnds = new TreeMap<>();
+        private final Set<Integer> done = new HashSet<>();
+        private int nextChunk;
+        private long committed;
+
+        Checkpoint(Path file, long initial) {
+            this.file = file;
+            this.initial = initial;
+            this.committed = initial;
+        }
+
+        long initial() {
+            return initial;
+        }
+
+        synchronized long committed() {
+            return committed;
+        }
+
+        synchronized void register(int chunkIndex, long endRecord) {
+            chunkEnds.put(chunkIndex, endRecord);
+        }
+
+        synchronized void completed(int chunkIndex) {
+            done.add(chunkIndex);
+            long before = committed;
+            while (done.remove(nextChunk)) {
+                committed = chunkEnds.remove(nextChunk);
+                nextChunk++;
+            }
+            if (committed != before) {
+                write();
+            }
+        }
+
+        private void write() {
+            try {
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                Files.writeString(temp, Long.toString(committed));
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write import checkpoint " + file, e);
+            }
+        }
+    }
+}
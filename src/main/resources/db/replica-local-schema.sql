@@ -0,0 +1,23 @@
+-- Schema of the "replica" database in the replica-local profile (the primary's is created by Hibernate).
+CREATE TABLE IF NOT EXISTS users (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    email VARCHAR(255),
+    display_name VARCHAR(255),
+    avatar_url VARCHAR(255),
+    bio VARCHAR(255),
+    created_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6),
+    version BIGINT DEFAULT 0 NOT NULL,
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+CREATE TABLE IF NOT EXISTS auth_provider (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT,
+    provider VARCHAR(255),
+    provider_user_id VARCHAR(255),
+    provider_email VARCHAR(255),
+    CONSTRAINT uk_auth_provider_identity UNIQUE (provider, provider_user_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_auth_provider_user_id ON auth_provider (user_id);
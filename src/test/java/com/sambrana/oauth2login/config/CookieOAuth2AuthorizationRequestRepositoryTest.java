@@ -0,0 +1,119 @@
+package com.sambrana.oauth2login.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CookieOAuth2AuthorizationRequestRepositoryTest {
+
+    private final StatelessSessionTokens tokens = new StatelessSessionTokens(new ObjectMapper(),
+            List.of(SessionTokenCodecTest.NEW_KEY), false, Duration.ofHours(8), Duration.ofHours(24),
+            "APP_SESSION", false, Clock.systemUTC());
+    private final CookieOAuth2AuthorizationRequestRepository repository =
+            new CookieOAuth2AuthorizationRequestRepository(tokens);
+
+    @Test
+    void roundTripsTheAuthorizationRequest() {
+        OAuth2AuthorizationRequest saved = authorizationRequest("state-1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        repository.saveAuthorizationRequest(saved, new MockHttpServletRequest(), response);
+
+        OAuth2AuthorizationRequest loaded = repository.loadAuthorizationRequest(
+                callback("state-1", response.getCookie(CookieOAuth2AuthorizationRequestRepository.COOKIE_NAME).getValue()));
+
+        assertThat(loaded).isNotNull();
+        assertThat(loaded.getState()).isEqualTo("state-1");
+        assertThat(loaded.getRedirectUri()).isEqualTo(saved.getRedirectUri());
+        assertThat(loaded.getAttributes()).isEqualTo(saved.getAttributes());
+    }
+
+    @Test
+    void ignoresACookieForAnotherState() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        repository.saveAuthorizationRequest(authorizationRequest("state-1"), new MockHttpServletRequest(), response);
+
+        assertThat(repository.loadAuthorizationRequest(
+                callback("state-2", response.getCookie(CookieOAuth2AuthorizationRequestRepository.COOKIE_NAME).getValue())))
+                .isNull();
+    }
+
+    @Test
+    void ignoresAnUnsignedCookie() throws IOException {
+        String forged = "v1.new." + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(serialize(authorizationRequest("state-1"))) + ".AAAA";
+
+        assertThat(repository.loadAuthorizationRequest(callback("state-1", forged))).isNull();
+    }
+
+    @Test
+    void deserializationFilterRejectsClassesOutsideTheAllowList() throws IOException {
+        // Even a correctly signed payload must not instantiate anything we did not write
+        Gadget.readObjectCalls = 0;
+        String sealed = tokens.codec().seal(serialize(new Gadget()));
+
+        assertThat(repository.loadAuthorizationRequest(callback("state-1", sealed))).isNull();
+        assertThat(Gadget.readObjectCalls).isZero();
+    }
+
+    @Test
+    void deserializationFilterRejectsAllowListedContainersHoldingOtherClasses() throws IOException {
+        Gadget.readObjectCalls = 0;
+        String sealed = tokens.codec().seal(serialize(new HashMap<>(Map.of("k", new Gadget()))));
+
+        assertThat(repository.loadAuthorizationRequest(callback("state-1", sealed))).isNull();
+        assertThat(Gadget.readObjectCalls).isZero();
+    }
+
+    private static OAuth2AuthorizationRequest authorizationRequest(String state) {
+        return OAuth2AuthorizationRequest.authorizationCode()
+                .authorizationUri("https://github.com/login/oauth/authorize")
+                .clientId("client")
+                .redirectUri("http://localhost:8080/login/oauth2/code/github")
+                .scopes(Set.of("read:user", "user:email"))
+                .state(state)
+                .attributes(attributes -> attributes.put("registration_id", "github"))
+                .build();
+    }
+
+    private static MockHttpServletRequest callback(String state, String cookieValue) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/login/oauth2/code/github");
+        request.setParameter("state", state);
+        request.setCookies(new Cookie(CookieOAuth2AuthorizationRequestRepository.COOKIE_NAME, cookieValue));
+        return request;
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    static class Gadget implements Serializable {
+        static int readObjectCalls;
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            readObjectCalls++;
+            in.defaultReadObject();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.sambrana.oauth2login.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // login: 1 per minute, no burst beyond it; profile-write: 2 per minute, burst 2
+    private final RateLimitFilter filter = new RateLimitFilter(new RequestRateLimits(meterRegistry,
+            Duration.ofMinutes(10), 1000, 1, Duration.ofMinutes(1), 1, 2, Duration.ofMinutes(1), 2));
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        assertThat(chain.getRequest() != null).isEqualTo(response.getStatus() != 429);
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String method, String path, String remoteAddr) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setRemoteAddr(remoteAddr);
+        return request;
+    }
+
+    @Test
+    void answersOverTheLimitWith429AndRetryAfter() throws Exception {
+        assertThat(send(request("GET", "/oauth2/authorization/github", "10.0.0.1")).getStatus()).isEqualTo(200);
+
+        MockHttpServletResponse rejected = send(request("GET", "/login/oauth2/code/github", "10.0.0.1"));
+
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        // One permit a minute: the next one is (just under) 60s away, rounded up to whole seconds
+        assertThat(rejected.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("60");
+        assertThat(rejected.getContentType()).isEqualTo("application/json");
+        assertThat(rejected.getContentAsString()).contains("Too many requests");
+        assertThat(meterRegistry.get("http.rate_limited").tag("group", "login").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void limitsLoginPerClientAddress() throws Exception {
+        send(request("GET", "/oauth2/authorization/github", "10.0.0.1"));
+
+        assertThat(send(request("GET", "/oauth2/authorization/github", "10.0.0.2")).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void passesUnlimitedPathsThrough() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            assertThat(send(request("GET", "/api/me", "10.0.0.1")).getStatus()).isEqualTo(200);
+            assertThat(send(request("GET", "/api/profile", "10.0.0.1")).getStatus()).isEqualTo(200);
+        }
+    }
+
+    @Test
+    void limitsProfileWritesPerUserAcrossPostAndPatch() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("ada", null, "ROLE_USER"));
+        assertThat(send(request("POST", "/api/profile", "10.0.0.1")).getStatus()).isEqualTo(200);
+        assertThat(send(request("PATCH", "/api/profile", "10.0.0.2")).getStatus()).isEqualTo(200);
+        // Same user from a third address: the budget follows the user
+        assertThat(send(request("PATCH", "/api/profile", "10.0.0.3")).getStatus()).isEqualTo(429);
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("bob", null, "ROLE_USER"));
+        assertThat(send(request("POST", "/api/profile", "10.0.0.1")).getStatus()).isEqualTo(200);
+    }
+}
@@ -0,0 +1,130 @@
+package com.sambrana.oauth2login.config;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RateLimiterTest {
+
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = nanos::get;
+
+    // 60 per minute (one every second), bursting to 5
+    private RateLimiter limiter(Duration idleTimeout, long maxKeys) {
+        return new RateLimiter("test", 60, Duration.ofMinutes(1), 5, idleTimeout, maxKeys, ticker);
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+
+    @Test
+    void allowsABurstThenRejectsWithTheTimeUntilTheNextPermit() {
+        RateLimiter limiter = limiter(Duration.ofMinutes(10), 100);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire("client")).as("request %d", i).isZero();
+        }
+        assertThat(limiter.tryAcquire("client")).isEqualTo(SECOND);
+
+        advance(Duration.ofMillis(400));
+        assertThat(limiter.tryAcquire("client")).isEqualTo(SECOND - Duration.ofMillis(400).toNanos());
+    }
+
+    @Test
+    void rejectedRequestsDoNotConsumePermits() {
+        RateLimiter limiter = limiter(Duration.ofMinutes(10), 100);
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire("client");
+        }
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire("client");
+        }
+
+        advance(Duration.ofSeconds(1));
+        assertThat(limiter.tryAcquire("client")).isZero();
+    }
+
+    @Test
+    void sustainsTheSteadyRateAfterTheBurst() {
+        RateLimiter limiter = limiter(Duration.ofMinutes(10), 100);
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire("client");
+        }
+
+        int allowed = 0;
+        for (int ms = 0; ms < 10_000; ms += 100) {
+            advance(Duration.ofMillis(100));
+            if (limiter.tryAcquire("client") == 0) {
+                allowed++;
+            }
+        }
+        assertThat(allowed).isEqualTo(10);
+    }
+
+    @Test
+    void idleTimeRefillsTheBurstButNoFurther() {
+        RateLimiter limiter = limiter(Duration.ofMinutes(10), 100);
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire("client");
+        }
+
+        advance(Duration.ofMinutes(1));
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire("client")).isZero();
+        }
+        assertThat(limiter.tryAcquire("client")).isPositive();
+    }
+
+    @Test
+    void keysAreLimitedIndependently() {
+        RateLimiter limiter = limiter(Duration.ofMinutes(10), 100);
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire("a");
+        }
+
+        assertThat(limiter.tryAcquire("a")).isPositive();
+        assertThat(limiter.tryAcquire("b")).isZero();
+    }
+
+    @Test
+    void dropsBucketsAfterTheIdleTimeout() {
+        RateLimiter limiter = limiter(Duration.ofMinutes(10), 100);
+        limiter.tryAcquire("a");
+        limiter.tryAcquire("b");
+        assertThat(limiter.trackedKeys()).isEqualTo(2);
+
+        advance(Duration.ofMinutes(5));
+        limiter.tryAcquire("b");
+        advance(Duration.ofMinutes(5).plusNanos(1));
+
+        assertThat(limiter.trackedKeys()).isEqualTo(1);
+        advance(Duration.ofMinutes(5));
+        assertThat(limiter.trackedKeys()).isZero();
+    }
+
+    @Test
+    void boundsTheNumberOfTrackedKeys() {
+        RateLimiter limiter = limiter(Duration.ofMinutes(10), 100);
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(limiter.tryAcquire("client-" + i)).isZero();
+        }
+
+        assertThat(limiter.trackedKeys()).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    void rejectsNonPositiveLimits() {
+        assertThatThrownBy(() -> new RateLimiter("bad", 0, Duration.ofMinutes(1), 5, Duration.ofMinutes(1), 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new RateLimiter("bad", 5, Duration.ofMinutes(1), 0, Duration.ofMinutes(1), 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
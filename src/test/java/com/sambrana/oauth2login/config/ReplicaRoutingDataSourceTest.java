@@ -0,0 +1,121 @@
+package com.sambrana.oauth2login.config;
+
+import com.sambrana.oauth2login.service.PrimaryPins;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaRoutingDataSourceTest {
+
+    private HikariDataSource primary;
+    private HikariDataSource replica;
+    private ReplicaRoutingDataSource routing;
+    private PrimaryPins primaryPins;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    void createDatabases() {
+        primary = database("primary");
+        replica = database("replica");
+        primaryPins = new PrimaryPins("jdbc:h2:mem:replica", Duration.ofMinutes(1), 100);
+        routing = new ReplicaRoutingDataSource(primary, replica, primaryPins);
+        routing.afterPropertiesSet();
+
+        // Wired as ReadReplicaConfig does: the transaction manager only sees the lazy proxy
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routing);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @AfterEach
+    void closePools() {
+        SecurityContextHolder.clearContext();
+        routing.destroy();
+    }
+
+    private static HikariDataSource database(String name) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setPoolName(name);
+        dataSource.setMaximumPoolSize(2);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE whoami (name VARCHAR(16))");
+        jdbc.update("INSERT INTO whoami VALUES (?)", name);
+        jdbc.execute("CREATE TABLE notes (body VARCHAR(64))");
+        return dataSource;
+    }
+
+    private String database() {
+        return jdbcTemplate.queryForObject("SELECT name FROM whoami", String.class);
+    }
+
+    private String databaseIn(TransactionTemplate transaction) {
+        return transaction.execute(status -> database());
+    }
+
+    private static void signIn(String email) {
+        DefaultOAuth2User user = new DefaultOAuth2User(AuthorityUtils.createAuthorityList("ROLE_USER"),
+                Map.of("sub", email, "email", email), "sub");
+        SecurityContextHolder.getContext().setAuthentication(
+                new OAuth2AuthenticationToken(user, user.getAuthorities(), "google"));
+    }
+
+    @Test
+    void readOnlyTransactionsGoToTheReplica() {
+        assertThat(databaseIn(readOnly)).isEqualTo("replica");
+    }
+
+    @Test
+    void readWriteTransactionsAndPlainJdbcGoToThePrimary() {
+        assertThat(databaseIn(readWrite)).isEqualTo("primary");
+        assertThat(database()).isEqualTo("primary");
+    }
+
+    @Test
+    void writesLandOnThePrimaryOnly() {
+        readWrite.executeWithoutResult(status -> jdbcTemplate.update("INSERT INTO notes VALUES ('hello')"));
+
+        assertThat(new JdbcTemplate(primary).queryForObject("SELECT COUNT(*) FROM notes", Integer.class)).isEqualTo(1);
+        assertThat(new JdbcTemplate(replica).queryForObject("SELECT COUNT(*) FROM notes", Integer.class)).isZero();
+    }
+
+    @Test
+    void pinnedUsersReadFromThePrimary() {
+        primaryPins.pin("ada@example.com");
+
+        signIn("ada@example.com");
+        assertThat(databaseIn(readOnly)).isEqualTo("primary");
+
+        signIn("bob@example.com");
+        assertThat(databaseIn(readOnly)).isEqualTo("replica");
+    }
+
+    @Test
+    void pinsAreIgnoredWithoutAReplica() {
+        PrimaryPins disabled = new PrimaryPins("", Duration.ofMinutes(1), 100);
+        disabled.pin("ada@example.com");
+        signIn("ada@example.com");
+
+        assertThat(disabled.isCurrentUserPinned()).isFalse();
+    }
+}
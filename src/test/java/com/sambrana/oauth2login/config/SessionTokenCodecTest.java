@@ -0,0 +1,156 @@
+package com.sambrana.oauth2login.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sambrana.oauth2login.config.SessionTokenCodec.Claims;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SessionTokenCodecTest {
+
+    static final String OLD_KEY = key("old", 1);
+    static final String NEW_KEY = key("new", 2);
+    static final Duration MAX_LIFETIME = Duration.ofHours(24);
+    static final Instant LOGIN = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    static String key(String id, int fill) {
+        byte[] secret = new byte[32];
+        Arrays.fill(secret, (byte) fill);
+        return id + ":" + Base64.getEncoder().encodeToString(secret);
+    }
+
+    private SessionTokenCodec codec(boolean encrypt, String... keys) {
+        return new SessionTokenCodec(List.of(keys), encrypt, MAX_LIFETIME, objectMapper);
+    }
+
+    private static Claims claims(Instant issuedAt, Duration maxAge) {
+        return new Claims(42L, "ada@example.com", "GITHUB", LOGIN, issuedAt, issuedAt.plus(maxAge));
+    }
+
+    @Test
+    void roundTripsPlainAndEncryptedTokens() {
+        Claims claims = claims(LOGIN, Duration.ofHours(8));
+        for (boolean encrypt : new boolean[] {false, true}) {
+            SessionTokenCodec codec = codec(encrypt, NEW_KEY);
+            String token = codec.encode(claims);
+
+            assertThat(token).startsWith(encrypt ? "v1e.new." : "v1.new.");
+            assertThat(codec.decode(token, LOGIN.plusSeconds(60))).contains(claims);
+        }
+    }
+
+    @Test
+    void encryptedBodyDoesNotRevealTheClaims() {
+        String plain = codec(false, NEW_KEY).encode(claims(LOGIN, Duration.ofHours(8)));
+        String encrypted = codec(true, NEW_KEY).encode(claims(LOGIN, Duration.ofHours(8)));
+
+        assertThat(new String(Base64.getUrlDecoder().decode(plain.split("\\.")[2]), StandardCharsets.UTF_8))
+                .contains("ada@example.com");
+        assertThat(new String(Base64.getUrlDecoder().decode(encrypted.split("\\.")[2]), StandardCharsets.ISO_8859_1))
+                .doesNotContain("ada@example.com");
+    }
+
+    @Test
+    void encryptionSettingOnlyAffectsNewTokens() {
+        String plain = codec(false, NEW_KEY).encode(claims(LOGIN, Duration.ofHours(8)));
+        String encrypted = codec(true, NEW_KEY).encode(claims(LOGIN, Duration.ofHours(8)));
+
+        assertThat(codec(true, NEW_KEY).decode(plain, LOGIN)).isPresent();
+        assertThat(codec(false, NEW_KEY).decode(encrypted, LOGIN)).isPresent();
+    }
+
+    @Test
+    void rejectsTamperedTokens() {
+        for (boolean encrypt : new boolean[] {false, true}) {
+            SessionTokenCodec codec = codec(encrypt, NEW_KEY);
+            String token = codec.encode(claims(LOGIN, Duration.ofHours(8)));
+            String[] parts = token.split("\\.");
+
+            assertThat(codec.decode(flipFirstChar(parts, 2), LOGIN)).as("body").isEmpty();
+            assertThat(codec.decode(flipFirstChar(parts, 3), LOGIN)).as("signature").isEmpty();
+            assertThat(codec.decode(String.join(".", encrypt ? "v1" : "v1e", parts[1], parts[2], parts[3]), LOGIN))
+                    .as("version").isEmpty();
+            assertThat(codec.decode(parts[0] + "." + parts[1] + "." + parts[2], LOGIN)).as("truncated").isEmpty();
+            assertThat(codec.decode("not a token", LOGIN)).isEmpty();
+            assertThat(codec.decode(null, LOGIN)).isEmpty();
+        }
+    }
+
+    @Test
+    void rejectsTokensSignedWithAnUnknownKey() {
+        String token = codec(false, key("new", 9)).encode(claims(LOGIN, Duration.ofHours(8)));
+
+        assertThat(codec(false, NEW_KEY).decode(token, LOGIN)).isEmpty();
+    }
+
+    @Test
+    void rotatedOutKeysStillVerifyUntilDropped() {
+        String oldToken = codec(true, OLD_KEY).encode(claims(LOGIN, Duration.ofHours(8)));
+        SessionTokenCodec rotated = codec(true, NEW_KEY, OLD_KEY);
+
+        assertThat(rotated.decode(oldToken, LOGIN)).isPresent();
+        assertThat(rotated.encode(claims(LOGIN, Duration.ofHours(8)))).startsWith("v1e.new.");
+        assertThat(codec(true, NEW_KEY).decode(oldToken, LOGIN)).isEmpty();
+    }
+
+    @Test
+    void rejectsExpiredTokens() {
+        SessionTokenCodec codec = codec(false, NEW_KEY);
+        String token = codec.encode(claims(LOGIN, Duration.ofHours(8)));
+
+        assertThat(codec.decode(token, LOGIN.plus(Duration.ofHours(8)).minusSeconds(1))).isPresent();
+        assertThat(codec.decode(token, LOGIN.plus(Duration.ofHours(8)))).isEmpty();
+    }
+
+    @Test
+    void rejectsTokensPastTheAbsoluteLifetimeEvenIfNotExpired() {
+        SessionTokenCodec codec = codec(false, NEW_KEY);
+        Instant reissued = LOGIN.plus(Duration.ofHours(20));
+        // Only reachable with a longer max-lifetime at issue time; decode enforces the current one
+        String token = codec.encode(claims(reissued, Duration.ofHours(8)));
+
+        assertThat(codec.decode(token, LOGIN.plus(MAX_LIFETIME).minusSeconds(1))).isPresent();
+        assertThat(codec.decode(token, LOGIN.plus(MAX_LIFETIME))).isEmpty();
+    }
+
+    @Test
+    void tokensWithoutALoginTimeCountFromTheirIssueTime() throws Exception {
+        SessionTokenCodec codec = codec(false, NEW_KEY);
+        Instant issuedAt = LOGIN;
+        String token = codec.seal(objectMapper.writeValueAsBytes(Map.of(
+                "uid", 42, "em", "ada@example.com", "pv", "GITHUB",
+                "iat", issuedAt.getEpochSecond(), "exp", issuedAt.plus(Duration.ofDays(2)).getEpochSecond())));
+
+        assertThat(codec.decode(token, issuedAt)).map(Claims::authenticatedAt).contains(issuedAt);
+        assertThat(codec.decode(token, issuedAt.plus(MAX_LIFETIME))).isEmpty();
+    }
+
+    @Test
+    void rejectsShortOrMalformedKeys() {
+        assertThatThrownBy(() -> codec(false, "k:" + Base64.getEncoder().encodeToString(new byte[16])))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> codec(false, "no-kid"))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> new SessionTokenCodec(List.of(), false, MAX_LIFETIME, objectMapper))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static String flipFirstChar(String[] parts, int index) {
+        String[] copy = parts.clone();
+        // The first character is all payload bits; the last may be partly padding
+        String part = copy[index];
+        copy[index] = (part.charAt(0) == 'A' ? 'B' : 'A') + part.substring(1);
+        return String.join(".", copy);
+    }
+}
@@ -0,0 +1,104 @@
+package com.sambrana.oauth2login.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sambrana.oauth2login.MutableClock;
+import com.sambrana.oauth2login.config.SessionTokenCodec.Claims;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatelessSessionTokensTest {
+
+    static final Instant LOGIN = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final MutableClock clock = new MutableClock(LOGIN);
+    private final StatelessSessionTokens tokens = new StatelessSessionTokens(new ObjectMapper(),
+            List.of(SessionTokenCodecTest.NEW_KEY), false, Duration.ofHours(8), Duration.ofHours(24),
+            "APP_SESSION", true, clock);
+
+    private String cookie;
+
+    @Test
+    void issuesACookieThatReadsBack() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        tokens.issue(response, 42L, "ada@example.com", "GITHUB");
+        cookie = tokenFrom(response);
+
+        assertThat(response.getHeader(HttpHeaders.SET_COOKIE))
+                .contains("Max-Age=28800", "HttpOnly", "Secure", "SameSite=Lax");
+        assertThat(read()).hasValueSatisfying(claims -> {
+            assertThat(claims.userId()).isEqualTo(42L);
+            assertThat(claims.authenticatedAt()).isEqualTo(LOGIN);
+            assertThat(claims.expiresAt()).isEqualTo(LOGIN.plus(Duration.ofHours(8)));
+        });
+    }
+
+    @Test
+    void reissuesOnceHalfTheMaxAgeHasPassedKeepingTheLoginTime() {
+        login();
+
+        clock.advance(Duration.ofHours(3));
+        MockHttpServletResponse early = new MockHttpServletResponse();
+        tokens.refreshIfAging(read().orElseThrow(), early);
+        assertThat(early.getHeader(HttpHeaders.SET_COOKIE)).isNull();
+
+        clock.advance(Duration.ofHours(2));
+        MockHttpServletResponse aging = new MockHttpServletResponse();
+        tokens.refreshIfAging(read().orElseThrow(), aging);
+        cookie = tokenFrom(aging);
+
+        Claims refreshed = read().orElseThrow();
+        assertThat(refreshed.authenticatedAt()).isEqualTo(LOGIN);
+        assertThat(refreshed.issuedAt()).isEqualTo(LOGIN.plus(Duration.ofHours(5)));
+        assertThat(refreshed.expiresAt()).isEqualTo(LOGIN.plus(Duration.ofHours(13)));
+    }
+
+    @Test
+    void activeSessionStillEndsAtTheAbsoluteLifetime() {
+        login();
+
+        // A client that keeps making requests: every refresh that is offered is taken
+        for (int hour = 1; hour < 24; hour++) {
+            clock.advance(Duration.ofHours(1));
+            Claims claims = read().orElseThrow(() -> new AssertionError("session ended early"));
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            tokens.refreshIfAging(claims, response);
+            if (response.getHeader(HttpHeaders.SET_COOKIE) != null) {
+                cookie = tokenFrom(response);
+                assertThat(read().orElseThrow().expiresAt()).isBeforeOrEqualTo(LOGIN.plus(Duration.ofHours(24)));
+            }
+        }
+
+        clock.advance(Duration.ofMinutes(59));
+        assertThat(read()).isPresent();
+        clock.advance(Duration.ofMinutes(1));
+        assertThat(read()).isEmpty();
+    }
+
+    private void login() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        tokens.issue(response, 42L, "ada@example.com", "GITHUB");
+        cookie = tokenFrom(response);
+    }
+
+    private Optional<Claims> read() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie("APP_SESSION", cookie));
+        return tokens.read(request);
+    }
+
+    private static String tokenFrom(MockHttpServletResponse response) {
+        Cookie written = response.getCookie("APP_SESSION");
+        assertThat(written).isNotNull();
+        return written.getValue();
+    }
+}
@@ -0,0 +1,135 @@
+package com.sambrana.oauth2login.service;
+
+import com.sambrana.oauth2login.service.AvatarCache.AvatarUnavailableException;
+import com.sambrana.oauth2login.service.AvatarCache.OpenEntry;
+import com.sambrana.oauth2login.service.AvatarCache.Variant;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AvatarCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private final AtomicInteger fetches = new AtomicInteger();
+    private HttpServer upstream;
+    private CloseableHttpClient httpClient;
+
+    @BeforeEach
+    void startUpstream() throws IOException {
+        byte[] png = png(200, 100);
+        upstream = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        upstream.createContext("/avatar.png", exchange -> {
+            fetches.incrementAndGet();
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, png.length);
+            exchange.getResponseBody().write(png);
+            exchange.close();
+        });
+        upstream.start();
+        httpClient = HttpClients.createDefault();
+    }
+
+    @AfterEach
+    void stopUpstream() throws IOException {
+        upstream.stop(0);
+        httpClient.close();
+    }
+
+    private String url() {
+        return "http://127.0.0.1:" + upstream.getAddress().getPort() + "/avatar.png";
+    }
+
+    private AvatarCache cache(long maxPixels) throws IOException {
+        return new AvatarCache(httpClient, dir, DataSize.ofMegabytes(1), DataSize.ofMegabytes(1), maxPixels,
+                Set.of("127.0.0.1"));
+    }
+
+    @Test
+    void rendersSquareVariantsOnceAndServesThemFromDisk() throws IOException {
+        AvatarCache cache = cache(1_000_000);
+
+        try (InputStream content = cache.open(url(), Variant.MEDIUM).content()) {
+            BufferedImage image = ImageIO.read(content);
+            assertThat(image.getWidth()).isEqualTo(128);
+            assertThat(image.getHeight()).isEqualTo(128);
+        }
+        cache.open(url(), Variant.SMALL).content().close();
+        cache.open(url(), Variant.MEDIUM).content().close();
+
+        assertThat(fetches).hasValue(1);
+    }
+
+    @Test
+    void treatsADeletedFileAsAMiss() throws IOException {
+        AvatarCache cache = cache(1_000_000);
+        AvatarCache.Entry stored = cache.get(url(), Variant.MEDIUM);
+        // As if evicted by another request between the lookup and the response
+        Files.delete(stored.file());
+
+        OpenEntry reopened = cache.open(url(), Variant.MEDIUM);
+        try (InputStream content = reopened.content()) {
+            assertThat(content.readAllBytes()).hasSize((int) reopened.entry().size());
+        }
+        assertThat(fetches).hasValue(2);
+    }
+
+    @Test
+    void openFileSurvivesEviction() throws IOException {
+        AvatarCache cache = cache(1_000_000);
+        OpenEntry opened = cache.open(url(), Variant.MEDIUM);
+
+        Files.delete(opened.entry().file());
+
+        try (InputStream content = opened.content()) {
+            assertThat(content.readAllBytes()).hasSize((int) opened.entry().size());
+        }
+    }
+
+    @Test
+    void refusesImagesOverThePixelBudget() throws IOException {
+        AvatarCache cache = cache(200 * 100 - 1);
+
+        assertThatThrownBy(() -> cache.open(url(), Variant.MEDIUM))
+                .isInstanceOf(AvatarUnavailableException.class)
+                .cause().hasMessageContaining("200x100");
+    }
+
+    @Test
+    void decodeChecksTheHeaderDimensions() throws IOException {
+        byte[] png = png(64, 32);
+
+        assertThat(AvatarCache.decode(png, 64 * 32).getWidth()).isEqualTo(64);
+        assertThatThrownBy(() -> AvatarCache.decode(png, 64 * 32 - 1)).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> AvatarCache.decode("not an image".getBytes(), 1_000_000))
+                .hasMessage("Unsupported image format");
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", bytes);
+        assertThat(ImageIO.read(new ByteArrayInputStream(bytes.toByteArray()))).isNotNull();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,151 @@
+package com.sambrana.oauth2login.service;
+
+import com.sambrana.oauth2login.MutableClock;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GitHubEmailClientTest {
+
+    private static final String EMAILS = """
+            [{"email":"old@example.com","primary":false,"verified":true},
+             {"email":"ada@example.com","primary":true,"verified":true}]
+            """;
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile int status = 200;
+    private HttpServer github;
+    private GitHubEmailClient client;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        github = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        github.createContext("/user/emails", exchange -> {
+            calls.incrementAndGet();
+            byte[] body = (status == 200 ? EMAILS : "{\"message\":\"nope\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        github.start();
+        client = clientFor("http://127.0.0.1:" + github.getAddress().getPort());
+    }
+
+    @AfterEach
+    void stopStub() {
+        github.stop(0);
+    }
+
+    // Opens after three failures in a row, for one minute
+    private GitHubEmailClient clientFor(String baseUrl) {
+        return new GitHubEmailClient(RestClient.builder().baseUrl(baseUrl).build(), new SimpleMeterRegistry(),
+                Duration.ofMinutes(10), 100, 3, Duration.ofMinutes(1), clock);
+    }
+
+    @Test
+    void picksThePrimaryVerifiedEmail() {
+        assertThat(client.fetchPrimaryEmail("42", "token")).contains("ada@example.com");
+        assertThat(client.circuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void cacheHitSkipsTheCall() {
+        client.fetchPrimaryEmail("42", "token");
+
+        assertThat(client.fetchPrimaryEmail("42", "other-token")).contains("ada@example.com");
+        assertThat(client.cachedEmail("42")).contains("ada@example.com");
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void clientErrorsDoNotTripTheBreaker() {
+        status = 401;
+        for (int i = 0; i < 10; i++) {
+            assertThat(client.fetchPrimaryEmail("42", "revoked")).isEmpty();
+        }
+
+        assertThat(client.circuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(calls).hasValue(10);
+        assertThat(client.cachedEmail("42")).isEmpty();
+    }
+
+    @Test
+    void serverErrorsTripTheBreakerAndItFailsFast() {
+        status = 502;
+        for (int i = 0; i < 3; i++) {
+            client.fetchPrimaryEmail("42", "token");
+        }
+        assertThat(client.circuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        status = 200;
+        assertThat(client.fetchPrimaryEmail("42", "token")).isEmpty();
+        assertThat(calls).hasValue(3);
+    }
+
+    @Test
+    void ioErrorsTripTheBreaker() {
+        github.stop(0);
+        // Nothing listens on the stub's port any more: connection refused
+        for (int i = 0; i < 3; i++) {
+            assertThat(client.fetchPrimaryEmail("42", "token")).isEmpty();
+        }
+
+        assertThat(client.circuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void halfOpenLetsOneTrialThroughAfterTheOpenDuration() {
+        status = 500;
+        for (int i = 0; i < 3; i++) {
+            client.fetchPrimaryEmail("42", "token");
+        }
+
+        clock.advance(Duration.ofSeconds(59));
+        client.fetchPrimaryEmail("42", "token");
+        assertThat(calls).hasValue(3);
+
+        // A failed trial re-opens for a full window
+        clock.advance(Duration.ofSeconds(1));
+        client.fetchPrimaryEmail("42", "token");
+        assertThat(calls).hasValue(4);
+        assertThat(client.circuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+        clock.advance(Duration.ofSeconds(30));
+        client.fetchPrimaryEmail("42", "token");
+        assertThat(calls).hasValue(4);
+
+        // A successful trial closes it
+        clock.advance(Duration.ofSeconds(30));
+        status = 200;
+        assertThat(client.fetchPrimaryEmail("42", "token")).contains("ada@example.com");
+        assertThat(client.circuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(calls).hasValue(5);
+    }
+
+    @Test
+    void successResetsTheFailureCount() {
+        status = 500;
+        client.fetchPrimaryEmail("1", "token");
+        client.fetchPrimaryEmail("2", "token");
+        status = 200;
+        client.fetchPrimaryEmail("3", "token");
+        status = 500;
+        client.fetchPrimaryEmail("4", "token");
+        client.fetchPrimaryEmail("5", "token");
+
+        assertThat(client.circuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+}
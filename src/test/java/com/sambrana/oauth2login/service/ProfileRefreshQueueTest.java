@@ -0,0 +1,153 @@
+package com.sambrana.oauth2login.service;
+
+import com.sambrana.oauth2login.repository.ProvisioningRepository;
+import com.sambrana.oauth2login.repository.ProvisioningRepository.ProfileRefresh;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProfileRefreshQueueTest {
+
+    /** Records each batch instead of writing it; optionally fails every write. */
+    static class RecordingRepository extends ProvisioningRepository {
+        final List<List<ProfileRefresh>> batches = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean failing;
+
+        RecordingRepository() {
+            super(null, null);
+        }
+
+        @Override
+        public void refreshProfiles(List<ProfileRefresh> refreshes) {
+            if (failing) {
+                throw new IllegalStateException("database unavailable");
+            }
+            batches.add(List.copyOf(refreshes));
+        }
+
+        List<ProfileRefresh> written() {
+            synchronized (batches) {
+                return batches.stream().flatMap(List::stream).toList();
+            }
+        }
+    }
+
+    private final RecordingRepository repository = new RecordingRepository();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ProfileRefreshQueue queue;
+
+    @AfterEach
+    void stopQueue() {
+        if (queue != null && queue.isRunning()) {
+            queue.stop();
+        }
+    }
+
+    // The worker only wakes for a full batch: the interval is far longer than any test
+    private ProfileRefreshQueue start(int capacity, int batchSize, Duration offerTimeout) {
+        queue = new ProfileRefreshQueue(repository, new ProfileCache(100, Duration.ofMinutes(5), meterRegistry),
+                new PrimaryPins("", Duration.ofSeconds(5), 100), meterRegistry,
+                capacity, batchSize, Duration.ofHours(1), offerTimeout);
+        queue.start();
+        return queue;
+    }
+
+    private static ProfileRefresh refresh(long userId, String displayName) {
+        return new ProfileRefresh(userId, "user" + userId + "@example.com", displayName, null);
+    }
+
+    private double counter(String name) {
+        return meterRegistry.counter(name).count();
+    }
+
+    @Test
+    void coalescesRepeatedRefreshesForOneUser() {
+        start(10, 100, Duration.ofMillis(5));
+
+        assertThat(queue.offer(refresh(1, "first"))).isTrue();
+        assertThat(queue.offer(refresh(1, "second"))).isTrue();
+        assertThat(queue.offer(refresh(2, "other"))).isTrue();
+
+        assertThat(queue.depth()).isEqualTo(2);
+        assertThat(counter("login.profile_refresh.coalesced")).isEqualTo(1);
+
+        queue.stop();
+        assertThat(repository.written())
+                .containsExactlyInAnyOrder(refresh(1, "second"), refresh(2, "other"));
+    }
+
+    @Test
+    void refusesNewUsersOnceFullAfterTheOfferTimeout() {
+        start(2, 100, Duration.ofMillis(50));
+        queue.offer(refresh(1, "a"));
+        queue.offer(refresh(2, "b"));
+
+        long started = System.nanoTime();
+        assertThat(queue.offer(refresh(3, "c"))).isFalse();
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isGreaterThanOrEqualTo(Duration.ofMillis(50));
+        assertThat(counter("login.profile_refresh.rejected")).isEqualTo(1);
+
+        // A user already pending still coalesces into their slot
+        assertThat(queue.offer(refresh(1, "a2"))).isTrue();
+        assertThat(queue.depth()).isEqualTo(2);
+    }
+
+    @Test
+    void flushFreesCapacity() throws InterruptedException {
+        start(2, 2, Duration.ofSeconds(5));
+        queue.offer(refresh(1, "a"));
+        // Reaching the batch size wakes the worker, which frees both slots
+        queue.offer(refresh(2, "b"));
+
+        assertThat(queue.offer(refresh(3, "c"))).isTrue();
+        queue.stop();
+        assertThat(repository.written()).extracting(ProfileRefresh::userId).containsExactlyInAnyOrder(1L, 2L, 3L);
+    }
+
+    @Test
+    void stopDrainsEverythingInBatches() {
+        start(100, 4, Duration.ofMillis(5));
+        // Offer faster than the worker can be scheduled; whatever it misses, stop() writes
+        for (long id = 1; id <= 10; id++) {
+            assertThat(queue.offer(refresh(id, "name" + id))).isTrue();
+        }
+
+        queue.stop();
+
+        assertThat(queue.depth()).isZero();
+        assertThat(repository.written()).hasSize(10);
+        assertThat(repository.batches).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(4));
+    }
+
+    @Test
+    void refusesOffersAfterStop() {
+        start(10, 100, Duration.ofMillis(5));
+        queue.stop();
+
+        assertThat(queue.offer(refresh(1, "late"))).isFalse();
+        assertThat(queue.depth()).isZero();
+    }
+
+    @Test
+    void countsRefreshesLostToAFailedFlush() {
+        start(10, 100, Duration.ofMillis(5));
+        queue.offer(refresh(1, "a"));
+        queue.offer(refresh(2, "b"));
+        queue.offer(refresh(3, "c"));
+        repository.failing = true;
+
+        queue.stop();
+
+        assertThat(queue.depth()).isZero();
+        assertThat(counter("login.profile_refresh.dropped")).isEqualTo(3);
+        assertThat(repository.written()).isEmpty();
+    }
+}
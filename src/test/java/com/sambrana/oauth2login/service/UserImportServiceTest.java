@@ -0,0 +1,144 @@
+package com.sambrana.oauth2login.service;
+
+import com.sambrana.oauth2login.repository.EntityIds;
+import com.sambrana.oauth2login.repository.UserImportRepository;
+import com.sambrana.oauth2login.service.UserImportService.ImportReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class UserImportServiceTest {
+
+    /** Fails every chunk that links one of {@link #failFor}, after its users went in. */
+    static class FailingRepository extends UserImportRepository {
+        volatile Set<String> failFor = Set.of();
+
+        FailingRepository(JdbcTemplate jdbcTemplate) {
+            super(jdbcTemplate, mock(EntityIds.class));
+        }
+
+        @Override
+        public int insertLinks(List<ImportedIdentity> identities, Map<String, Long> userIds) {
+            if (identities.stream().anyMatch(identity -> failFor.contains(identity.email()))) {
+                throw new IllegalStateException("connection reset");
+            }
+            return super.insertLinks(identities, userIds);
+        }
+    }
+
+    @TempDir
+    Path dir;
+
+    private JdbcTemplate jdbcTemplate;
+    private FailingRepository repository;
+    private UserImportService service;
+
+    @BeforeEach
+    void createDatabase() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:import-" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("db/replica-local-schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        repository = new FailingRepository(jdbcTemplate);
+        // One worker, so chunks commit in file order
+        service = new UserImportService(repository,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)), 2, 1);
+    }
+
+    @Test
+    void resumesFromTheCheckpointAfterAFailedChunk() throws Exception {
+        Path file = dir.resolve("users.csv");
+        Files.writeString(file, """
+                email,display_name,avatar_url,providers
+                a@example.com,A,,GITHUB:1
+                b@example.com,B,,GITHUB:2
+                c@example.com,C,,GITHUB:3
+                d@example.com,D,,GITHUB:4;GOOGLE:g4
+                e@example.com,E,,GITHUB:5
+                f@example.com,F,,GITHUB:6
+                """);
+        // d already signed in with GitHub before the import
+        jdbcTemplate.update("INSERT INTO users (email, display_name) VALUES ('d@example.com', 'D')");
+        jdbcTemplate.update("INSERT INTO auth_provider (user_id, provider, provider_user_id) "
+                + "SELECT id, 'GITHUB', '4' FROM users WHERE email = 'd@example.com'");
+        repository.failFor = Set.of("c@example.com", "e@example.com");
+
+        assertThatThrownBy(() -> service.importFile(file)).isInstanceOf(IllegalStateException.class);
+
+        Path checkpoint = dir.resolve("users.csv.checkpoint");
+        assertThat(Files.readString(checkpoint)).isEqualTo("2");
+        assertThat(count("auth_provider")).isEqualTo(3);
+
+        repository.failFor = Set.of();
+        ImportReport report = service.importFile(file);
+
+        assertThat(report.records()).isEqualTo(6);
+        assertThat(report.resumedFrom()).isEqualTo(2);
+        // GITHUB:3, GOOGLE:g4, GITHUB:5 and GITHUB:6; d's GitHub link already existed
+        assertThat(report.identities()).isEqualTo(4);
+        assertThat(count("users")).isEqualTo(6);
+        assertThat(count("auth_provider")).isEqualTo(7);
+        assertThat(Files.exists(checkpoint)).isFalse();
+    }
+
+    @Test
+    void rerunningACompletedImportLinksNothingNew() throws Exception {
+        Path file = dir.resolve("users.csv");
+        Files.writeString(file, """
+                email,display_name,avatar_url,providers
+                a@example.com,A,,GITHUB:1
+                b@example.com,B,,GITHUB:2;GOOGLE:g2
+                c@example.com,C,,GITHUB:3
+                """);
+
+        assertThat(service.importFile(file).identities()).isEqualTo(4);
+
+        ImportReport again = service.importFile(file);
+        assertThat(again.records()).isEqualTo(3);
+        assertThat(again.identities()).isZero();
+        assertThat(count("users")).isEqualTo(3);
+        assertThat(count("auth_provider")).isEqualTo(4);
+    }
+
+    @Test
+    void stripsExactlyTheExportsFormulaGuard() throws Exception {
+        // As the export writes them: one ' added in front of =, +, -, @ and ' itself
+        Path file = dir.resolve("users.csv");
+        Files.writeString(file, """
+                email,display_name,avatar_url,providers
+                a@example.com,'=HYPERLINK(1),,GITHUB:1
+                b@example.com,'-dash,,GITHUB:2
+                c@example.com,''quoted,,GITHUB:3
+                d@example.com,''=literal,,GITHUB:4
+                e@example.com,'',,GITHUB:5
+                f@example.com,plain 'inner',,GITHUB:6
+                """);
+
+        service.importFile(file);
+
+        assertThat(jdbcTemplate.queryForList("SELECT display_name FROM users ORDER BY email", String.class))
+                .containsExactly("=HYPERLINK(1)", "-dash", "'quoted", "'=literal", "'", "plain 'inner'");
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+}